@@ -0,0 +1,101 @@
+package org.jetbrains.plugins.template;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.RecursionManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.CachedValue;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Map;
+
+import static com.intellij.psi.PsiModifier.PUBLIC;
+import static com.intellij.psi.PsiModifier.STATIC;
+import static com.intellij.psi.util.CachedValueProvider.Result.create;
+import static com.intellij.psi.util.CachedValuesManager.getCachedValue;
+import static com.intellij.psi.util.PropertyUtil.getPropertyName;
+import static com.intellij.psi.util.PropertyUtil.isSimplePropertyGetter;
+import static com.intellij.psi.util.PropertyUtil.isSimplePropertySetter;
+import static com.intellij.psi.util.PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT;
+
+/**
+ * Getters, setters & fields of a class hierarchy, indexed by name in a single pass over the members, so that writable properties of a class can be resolved with map lookups instead of scanning the hierarchy once per property.
+ * Index of a class is built from its own members & the (cached) indices of its supers, so a super class referred by multiple subclasses (for eg, a common base of configuration properties) is analysed only once
+ */
+class BeanPropertyIndex {
+
+  private static final Key<CachedValue<BeanPropertyIndex>>
+      SPRING_ASSISTANT_PLUGIN_BEAN_PROPERTY_INDEX_KEY =
+      Key.create("spring_assistant_plugin_beanPropertyIndex");
+
+  private static final BeanPropertyIndex EMPTY = new BeanPropertyIndex();
+
+  /**
+   * Public instance getters by property name. Getter declared closest to the class wins
+   */
+  private final Map<String, PsiMethod> propertyNameToGetter = new THashMap<>();
+  /**
+   * Public instance setters by method name. First one found (in the same order as {@link PsiClass#findMethodsByName(String, boolean)}) wins
+   */
+  private final Map<String, PsiMethod> setterNameToSetter = new THashMap<>();
+  /**
+   * Fields (static ones included) by name. First one found (in the same order as {@link PsiClass#findFieldByName(String, boolean)}) wins
+   */
+  private final Map<String, PsiField> nameToField = new THashMap<>();
+
+  @NotNull
+  static BeanPropertyIndex of(@NotNull PsiClass psiClass) {
+    return getCachedValue(psiClass, SPRING_ASSISTANT_PLUGIN_BEAN_PROPERTY_INDEX_KEY, () -> {
+      // cyclic hierarchies are possible while the code is being edited
+      BeanPropertyIndex index = RecursionManager
+          .doPreventingRecursion(psiClass, false, () -> newIndex(psiClass));
+      return create(index != null ? index : EMPTY, JAVA_STRUCTURE_MODIFICATION_COUNT);
+    });
+  }
+
+  @NotNull
+  private static BeanPropertyIndex newIndex(@NotNull PsiClass psiClass) {
+    BeanPropertyIndex index = new BeanPropertyIndex();
+    for (PsiMethod method : psiClass.getMethods()) {
+      if (method.hasModifierProperty(STATIC) || !method.hasModifierProperty(PUBLIC)) {
+        continue;
+      }
+      if (isSimplePropertyGetter(method)) {
+        String propertyName = getPropertyName(method);
+        assert propertyName != null;
+        index.propertyNameToGetter.putIfAbsent(propertyName, method);
+      } else if (isSimplePropertySetter(method)) {
+        index.setterNameToSetter.putIfAbsent(method.getName(), method);
+      }
+    }
+    for (PsiField field : psiClass.getFields()) {
+      index.nameToField.putIfAbsent(field.getName(), field);
+    }
+    for (PsiClass superClass : psiClass.getSupers()) {
+      BeanPropertyIndex superIndex = of(superClass);
+      superIndex.propertyNameToGetter.forEach(index.propertyNameToGetter::putIfAbsent);
+      superIndex.setterNameToSetter.forEach(index.setterNameToSetter::putIfAbsent);
+      superIndex.nameToField.forEach(index.nameToField::putIfAbsent);
+    }
+    return index;
+  }
+
+  Collection<Map.Entry<String, PsiMethod>> getters() {
+    return propertyNameToGetter.entrySet();
+  }
+
+  @Nullable
+  PsiMethod findSetter(@NotNull String setterName) {
+    return setterNameToSetter.get(setterName);
+  }
+
+  @Nullable
+  PsiField findField(@NotNull String name) {
+    return nameToField.get(name);
+  }
+
+}
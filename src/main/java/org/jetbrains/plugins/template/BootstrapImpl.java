@@ -44,7 +44,7 @@ public class BootstrapImpl implements Bootstrap, ProjectComponent {
     } catch (IOException e) {
       log.error(e);
     } finally {
-      debug(() -> log.debug("Indexing complete for project " + project.getName()));
+      debug(() -> log.debug("Indexing scheduled for project " + project.getName()));
     }
 
     try {
@@ -23,7 +23,6 @@ import static com.intellij.codeInsight.completion.CompletionUtilCore.DUMMY_IDENT
 import static com.intellij.codeInsight.documentation.DocumentationManager.createHyperlink;
 import static com.intellij.openapi.util.text.StringUtil.*;
 import static java.text.BreakIterator.getSentenceInstance;
-import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.joining;
 
@@ -123,15 +122,11 @@ public class GenericUtil {
     return text.replace(DUMMY_IDENTIFIER_TRIMMED, "");
   }
 
-  @SafeVarargs
-  public static <T> List<T> modifiableList(T... items) {
-    return new ArrayList<>(asList(items));
-  }
-
-  public static <T> List<T> newListWithMembers(List<T> itemsToCopy, T newItem) {
-    ArrayList<T> newModifiableList = new ArrayList<>(itemsToCopy);
-    newModifiableList.add(newItem);
-    return newModifiableList;
+  /**
+   * @return immutable list with the given items followed by the new item. Items are shared with (instead of copied from) the given list if it is a {@link PathList}
+   */
+  public static <T> List<T> newListWithMembers(List<T> items, T newItem) {
+    return PathList.append(items, newItem);
   }
 
   public static String removeGenerics(String type) {
@@ -0,0 +1,69 @@
+package org.jetbrains.plugins.template;
+
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Immutable list that shares all its items but the last with the list it is extended from (cons style). Lets the path from root to a node be extended a level at a time during a search, without copying the path at every level.
+ * Paths are only a few levels deep, so positional access simply walks back from the last item
+ *
+ * @param <T> type of the items
+ */
+public final class PathList<T> extends AbstractList<T> {
+
+  @Nullable
+  private final PathList<T> parent;
+  private final T last;
+  private final int size;
+
+  private PathList(@Nullable PathList<T> parent, T last) {
+    this.parent = parent;
+    this.last = last;
+    this.size = parent == null ? 1 : parent.size + 1;
+  }
+
+  public static <T> PathList<T> of(T item) {
+    return new PathList<>(null, item);
+  }
+
+  /**
+   * @param path path to extend. Copied only if it is not a {@link PathList}
+   * @param item item to add at the end
+   * @return new path with the item at the end. Passed path is left as is
+   */
+  public static <T> PathList<T> append(List<T> path, T item) {
+    return new PathList<>(toPathList(path), item);
+  }
+
+  @Nullable
+  private static <T> PathList<T> toPathList(List<T> path) {
+    if (path instanceof PathList) {
+      return (PathList<T>) path;
+    }
+    PathList<T> pathList = null;
+    for (T item : path) {
+      pathList = new PathList<>(pathList, item);
+    }
+    return pathList;
+  }
+
+  @Override
+  public T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    PathList<T> current = this;
+    for (int i = size - 1; i > index; i--) {
+      current = current.parent;
+      assert current != null;
+    }
+    return current.last;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+}
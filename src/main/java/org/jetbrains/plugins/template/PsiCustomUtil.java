@@ -5,6 +5,7 @@ import com.intellij.codeInsight.daemon.impl.analysis.JavaGenericsUtil;
 import com.intellij.codeInsight.javadoc.JavaDocInfoGenerator;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -13,7 +14,6 @@ import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.PropertyUtil;
 import com.intellij.util.IncorrectOperationException;
-import com.intellij.util.TimeoutUtil;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TObjectHashingStrategy;
@@ -26,6 +26,7 @@ import org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType;
 
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.intellij.openapi.module.ModuleUtilCore.findModuleForFile;
 import static com.intellij.openapi.module.ModuleUtilCore.findModuleForPsiElement;
@@ -41,7 +42,6 @@ import static com.intellij.psi.util.CachedValuesManager.getCachedValue;
 import static com.intellij.psi.util.InheritanceUtil.isInheritor;
 import static com.intellij.psi.util.PropertyUtil.*;
 import static com.intellij.psi.util.PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT;
-import static com.intellij.psi.util.PsiModificationTracker.MODIFICATION_COUNT;
 import static com.intellij.psi.util.PsiTypesUtil.getClassType;
 import static com.intellij.psi.util.PsiTypesUtil.hasUnresolvedComponents;
 import static com.intellij.psi.util.PsiUtil.extractIterableTypeParameter;
@@ -66,6 +66,9 @@ public class PsiCustomUtil {
   private static final Key<CachedValue<PsiType>> SPRING_ASSISTANT_PLUGIN_RETURN_TYPE_KEY =
       create("spring_assistant_plugin_returnType");
 
+  private static final AtomicLong propertyMapLookups = new AtomicLong();
+  private static final AtomicLong propertyMapMisses = new AtomicLong();
+
   @Nullable
   public static PsiType safeGetValidType(@NotNull Module module, @NotNull String fqn) {
     try {
@@ -343,11 +346,8 @@ public class PsiCustomUtil {
   // Copied & modified from PsiUtil.ensureValidType
   public static boolean isValidType(@NotNull PsiType type) {
     if (!type.isValid()) {
-      TimeoutUtil.sleep(
-          1); // to see if processing in another thread suddenly makes the type valid again (which is a bug)
-      if (!type.isValid()) {
-        return false;
-      }
+      yieldIfWriteActionIsPending();
+      return false;
     }
     if (type instanceof PsiArrayType) {
       return isValidType(PsiArrayType.class.cast(type).getComponentType());
@@ -367,20 +367,25 @@ public class PsiCustomUtil {
   }
 
   /**
-   * Checks if the element is valid. If not, throws {@link com.intellij.psi.PsiInvalidElementAccessException} with
-   * a meaningful message that points to the reasons why the element is not valid and may contain the stack trace
-   * when it was invalidated.
+   * Checks if the element is valid, without waiting for it to become valid again
    */
   // Copied & modified from PsiUtilCore.ensureValid
   private static boolean isValidElement(@NotNull PsiElement element) {
     if (!element.isValid()) {
-      TimeoutUtil.sleep(
-          1); // to see if processing in another thread suddenly makes the element valid again (which is a bug)
-      return element.isValid();
+      yieldIfWriteActionIsPending();
+      return false;
     }
     return true;
   }
 
+  /**
+   * PSI can only be invalidated by a write action, which cannot run while we are in a read action, so waiting for an invalid type/element to become valid again only stalls the write action that is waiting on our read lock.
+   * Instead, if the current (cancellable) read action is asked to give way, lets bail out with {@link com.intellij.openapi.progress.ProcessCanceledException}, so that the caller retries (completion restarts, indexing reruns the module) after the write action against fresh PSI
+   */
+  private static void yieldIfWriteActionIsPending() {
+    ProgressManager.checkCanceled();
+  }
+
   @Nullable
   public static PsiType getComponentType(@NotNull PsiType type) {
     if (type instanceof PsiArrayType) {
@@ -403,53 +408,71 @@ public class PsiCustomUtil {
   public static Map<String, GenericClassMemberWrapper> getSanitisedPropertyToPsiMemberWrapper(
       @Nullable PsiClass psiClass) {
     if (psiClass != null) {
+      propertyMapLookups.incrementAndGet();
+      // properties are derived from the members of the class & its supers, which can only change with java structure. Edits elsewhere (yaml files, method bodies) should not throw them away
       return getCachedValue(psiClass, SPRING_ASSISTANT_PLUGIN_PROPERTY_TO_CLASS_MEMBER_WRAPPER_KEY,
-          () -> create(prepareWritableProperties(psiClass), MODIFICATION_COUNT));
+          () -> {
+            long misses = propertyMapMisses.incrementAndGet();
+            debug(() -> log.debug(
+                "Preparing writable properties of " + psiClass.getQualifiedName() + ". Cache hits: "
+                    + getPropertyMapCacheHits() + ", misses: " + misses));
+            return create(prepareWritableProperties(psiClass), JAVA_STRUCTURE_MODIFICATION_COUNT);
+          });
     }
     return null;
   }
 
+  /**
+   * @return number of times properties of a class are served from the cache
+   */
+  public static long getPropertyMapCacheHits() {
+    return propertyMapLookups.get() - propertyMapMisses.get();
+  }
+
+  /**
+   * @return number of times properties of a class had to be (re)computed
+   */
+  public static long getPropertyMapCacheMisses() {
+    return propertyMapMisses.get();
+  }
+
   @NotNull
   private static Map<String, GenericClassMemberWrapper> prepareWritableProperties(
       @NotNull PsiClass psiClass) {
     final Map<String, GenericClassMemberWrapper> memberNameToMemberWrapper = new THashMap<>();
-    for (PsiMethod method : psiClass.getAllMethods()) {
-      if (method.hasModifierProperty(STATIC) || !method.hasModifierProperty(PUBLIC)) {
-        continue;
-      }
-      if (isSimplePropertyGetter(method)) {
-        PsiMember acceptableMember = method;
-        final String propertyName = getPropertyName(method);
-        assert propertyName != null;
-
-        PsiMethod setter = findInstancePropertySetter(psiClass, propertyName);
-        if (setter != null) {
-          final PsiType setterArgType = setter.getParameterList().getParameters()[0].getType();
-          final PsiField field = psiClass.findFieldByName(propertyName, true);
+    final BeanPropertyIndex index = BeanPropertyIndex.of(psiClass);
+    for (Map.Entry<String, PsiMethod> propertyNameAndGetter : index.getters()) {
+      final String propertyName = propertyNameAndGetter.getKey();
+      final PsiMethod method = propertyNameAndGetter.getValue();
+      PsiMember acceptableMember = method;
+
+      PsiMethod setter = index.findSetter(PropertyUtil.suggestSetterName(propertyName));
+      if (setter != null) {
+        final PsiType setterArgType = setter.getParameterList().getParameters()[0].getType();
+        final PsiField field = index.findField(propertyName);
+        if (field != null && !field.hasModifierProperty(STATIC)) {
+          final PsiType fieldType = getWritablePropertyType(psiClass, field);
+          if (fieldType == null || setterArgType.isConvertibleFrom(fieldType)) {
+            acceptableMember = field;
+          }
+        }
+      } else {
+        final PsiType returnType = method.getReturnType();
+        if (returnType != null && representsCollection(psiClass, returnType)) {
+          final PsiField field = index.findField(propertyName);
           if (field != null && !field.hasModifierProperty(STATIC)) {
             final PsiType fieldType = getWritablePropertyType(psiClass, field);
-            if (fieldType == null || setterArgType.isConvertibleFrom(fieldType)) {
+            if (fieldType == null || returnType.isAssignableFrom(fieldType)) {
               acceptableMember = field;
             }
           }
         } else {
-          final PsiType returnType = method.getReturnType();
-          if (returnType != null && representsCollection(psiClass, returnType)) {
-            final PsiField field = psiClass.findFieldByName(propertyName, true);
-            if (field != null && !field.hasModifierProperty(STATIC)) {
-              final PsiType fieldType = getWritablePropertyType(psiClass, field);
-              if (fieldType == null || returnType.isAssignableFrom(fieldType)) {
-                acceptableMember = field;
-              }
-            }
-          } else {
-            acceptableMember = null;
-          }
+          acceptableMember = null;
         }
-        if (acceptableMember != null)
-          memberNameToMemberWrapper
-              .put(sanitise(propertyName), new GenericClassMemberWrapper(acceptableMember));
       }
+      if (acceptableMember != null)
+        memberNameToMemberWrapper
+            .put(sanitise(propertyName), new GenericClassMemberWrapper(acceptableMember));
     }
     return memberNameToMemberWrapper;
   }
@@ -489,7 +512,7 @@ public class PsiCustomUtil {
       final PsiClass fieldClass = resolveResult.getElement();
       if (fieldClass == null) {
         final PsiType propertyType = eraseFreeTypeParameters(fieldType, field);
-        return create(propertyType, MODIFICATION_COUNT);
+        return create(propertyType, JAVA_STRUCTURE_MODIFICATION_COUNT);
       }
       return null;
     });
@@ -501,9 +524,9 @@ public class PsiCustomUtil {
       final PsiParameter[] parameters = method.getParameterList().getParameters();
       if (!method.hasModifierProperty(STATIC) && parameters.length == 1) {
         final PsiType argumentType = eraseFreeTypeParameters(parameters[0].getType(), method);
-        return create(argumentType, MODIFICATION_COUNT);
+        return create(argumentType, JAVA_STRUCTURE_MODIFICATION_COUNT);
       }
-      return create(null, MODIFICATION_COUNT);
+      return create(null, JAVA_STRUCTURE_MODIFICATION_COUNT);
     });
   }
 
@@ -527,7 +550,7 @@ public class PsiCustomUtil {
   private static PsiType getGetterReturnType(@NotNull PsiMethod method) {
     return getCachedValue(method, SPRING_ASSISTANT_PLUGIN_RETURN_TYPE_KEY, () -> {
       final PsiType returnType = eraseFreeTypeParameters(method.getReturnType(), method);
-      return create(returnType, MODIFICATION_COUNT);
+      return create(returnType, JAVA_STRUCTURE_MODIFICATION_COUNT);
     });
   }
 
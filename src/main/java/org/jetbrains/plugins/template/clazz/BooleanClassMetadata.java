@@ -21,7 +21,6 @@ import static java.lang.Boolean.TRUE;
 import static java.lang.String.valueOf;
 import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
-import static org.jetbrains.plugins.template.GenericUtil.dotDelimitedOriginalNames;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType.BOOLEAN;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType.ENUM;
 
@@ -168,11 +167,10 @@ public class BooleanClassMetadata extends ClassMetadata {
     Suggestion.SuggestionBuilder builder =
         Suggestion.builder().numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe)
             .shortType("Boolean").icon(ENUM.getIcon()).fileType(fileType);
+    // key suggestions derive the text to display from the matches, when needed
     if (forValue) {
       String valueToDisplay = valueOf(value);
       builder.suggestionToDisplay(valueToDisplay);
-    } else {
-      builder.suggestionToDisplay(dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors));
     }
     builder.forValue(forValue);
     return builder.build();
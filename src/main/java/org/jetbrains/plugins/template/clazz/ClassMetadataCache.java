@@ -0,0 +1,97 @@
+package org.jetbrains.plugins.template.clazz;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValuesManager;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.intellij.psi.util.CachedValueProvider.Result.create;
+import static org.jetbrains.plugins.template.PsiCustomUtil.computeDependencies;
+import static org.jetbrains.plugins.template.clazz.ClassSuggestionNodeFactory.newClassMetadata;
+
+/**
+ * Caches {@link ClassMetadata} in the user data of the class the type resolves to, under a single key per class, as a small map from the canonical text of the type (including its type parameters) to the metadata, so that a type referred by multiple properties is analysed only once.
+ * Each entry is a {@link CachedValue} that depends on all the classes the type is made of. So a same named class from another module (different version of a library, for eg) gets an entry of its own & nothing outside the class holds on to the metadata.
+ * Map of a class is bounded & evicts the least recently used types (`List<Foo>`, `List<Bar>`, e.t.c of a generic class), after which their metadata is unreachable
+ */
+public class ClassMetadataCache {
+
+  private static final Logger log = Logger.getInstance(ClassMetadataCache.class);
+
+  /**
+   * Max number of types cached per class. Can be overridden with the `spring.assistant.classMetadataCache.maxTypesPerClass` system property
+   */
+  private static final int MAX_TYPES_PER_CLASS = Math
+      .max(1, Integer.getInteger("spring.assistant.classMetadataCache.maxTypesPerClass", 32));
+
+  private static final Key<Map<String, CachedValue<ClassMetadata>>>
+      SPRING_ASSISTANT_PLUGIN_CLASS_METADATA_KEY =
+      Key.create("spring_assistant_plugin_class_metadata");
+
+  private final CachedValuesManager cachedValuesManager;
+  /**
+   * Guards the maps of all the classes, as they are tiny & are only looked up (or) added to
+   */
+  private final Object lock = new Object();
+
+  public ClassMetadataCache(Project project) {
+    cachedValuesManager = CachedValuesManager.getManager(project);
+  }
+
+  public static ClassMetadataCache getInstance(Project project) {
+    return ServiceManager.getService(project, ClassMetadataCache.class);
+  }
+
+  /**
+   * @param module        module from which the type is referred
+   * @param canonicalType canonical text of the type
+   * @param type          type to get the metadata for
+   * @param targetClass   class the type resolves to
+   * @return metadata of the type, null if the type (or) any of its type parameters is not valid
+   */
+  @Nullable
+  ClassMetadata get(Module module, String canonicalType, PsiClassType type,
+      PsiClass targetClass) {
+    CachedValue<ClassMetadata> cachedValue;
+    synchronized (lock) {
+      Map<String, CachedValue<ClassMetadata>> canonicalTypeToMetadata =
+          targetClass.getUserData(SPRING_ASSISTANT_PLUGIN_CLASS_METADATA_KEY);
+      if (canonicalTypeToMetadata == null) {
+        canonicalTypeToMetadata = newCanonicalTypeToMetadata();
+        targetClass.putUserData(SPRING_ASSISTANT_PLUGIN_CLASS_METADATA_KEY,
+            canonicalTypeToMetadata);
+      }
+      cachedValue = canonicalTypeToMetadata.computeIfAbsent(canonicalType,
+          k -> cachedValuesManager.createCachedValue(() -> {
+            log.debug("Creating metadata instance for " + canonicalType);
+            Set<PsiClass> dependencies = computeDependencies(module, type);
+            if (dependencies != null) {
+              return create(newClassMetadata(type), dependencies);
+            }
+            return null;
+          }, false));
+    }
+    return cachedValue.getValue();
+  }
+
+  private static Map<String, CachedValue<ClassMetadata>> newCanonicalTypeToMetadata() {
+    // access ordered
+    return new LinkedHashMap<String, CachedValue<ClassMetadata>>(4, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedValue<ClassMetadata>> eldest) {
+        return size() > MAX_TYPES_PER_CLASS;
+      }
+    };
+  }
+
+}
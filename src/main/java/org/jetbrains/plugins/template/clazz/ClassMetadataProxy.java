@@ -1,14 +1,9 @@
 package org.jetbrains.plugins.template.clazz;
 
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.util.Key;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiClassType;
 import com.intellij.psi.PsiType;
-import com.intellij.psi.util.CachedValue;
-import com.intellij.util.ConcurrencyUtil;
-import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
@@ -20,27 +15,23 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.concurrent.ConcurrentMap;
 
-import static com.intellij.psi.util.CachedValuesManager.getCachedValue;
 import static java.util.Objects.requireNonNull;
 import static org.jetbrains.plugins.template.PsiCustomUtil.*;
-import static org.jetbrains.plugins.template.clazz.ClassSuggestionNodeFactory.newClassMetadata;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType.UNKNOWN_CLASS;
-import static com.intellij.psi.util.CachedValueProvider.Result.create;
 
 public class ClassMetadataProxy implements MetadataProxy {
 
-  private static final Logger log = Logger.getInstance(ClassMetadataProxy.class);
-
-  private static ConcurrentMap<String, Key<CachedValue<ClassMetadata>>> fqnToKey =
-      ContainerUtil.newConcurrentMap();
-
   @NotNull
   private final PsiClass targetClass;
 
   @NotNull
   private final PsiClassType type;
+  /**
+   * Canonical text of {@link #type}, computed on first use
+   */
+  @Nullable
+  private volatile String canonicalType;
 
   ClassMetadataProxy(@NotNull PsiClassType type) {
     this.type = type;
@@ -162,22 +153,18 @@ public class ClassMetadataProxy implements MetadataProxy {
     return defaultReturnValue;
   }
 
+  @Nullable
   private ClassMetadata getTarget(Module module) {
-    String fqn = typeToFqn(module, type);
-    if (fqn != null) {
-      String userDataKeyRef = "spring_assistant_plugin_class_metadata:" + fqn;
-      Key<CachedValue<ClassMetadata>> classMetadataKey =
-          ConcurrencyUtil.cacheOrGet(fqnToKey, userDataKeyRef, Key.create(userDataKeyRef));
-      return getCachedValue(targetClass, classMetadataKey, () -> {
-        log.debug("Creating metadata instance for " + userDataKeyRef);
-        Set<PsiClass> dependencies = computeDependencies(module, type);
-        if (dependencies != null) {
-          return create(newClassMetadata(type), dependencies);
-        }
+    String canonicalType = this.canonicalType;
+    if (canonicalType == null) {
+      canonicalType = typeToFqn(module, type);
+      if (canonicalType == null) {
         return null;
-      });
+      }
+      this.canonicalType = canonicalType;
     }
-    return null;
+    return ClassMetadataCache.getInstance(module.getProject())
+        .get(module, canonicalType, type, targetClass);
   }
 
 
@@ -17,7 +17,6 @@ import java.util.SortedSet;
 import static com.intellij.codeInsight.documentation.DocumentationManager.createHyperlink;
 import static com.intellij.openapi.util.text.StringUtil.isEmpty;
 import static com.intellij.psi.CommonClassNames.JAVA_LANG_STRING;
-import static org.jetbrains.plugins.template.GenericUtil.dotDelimitedOriginalNames;
 import static org.jetbrains.plugins.template.PsiCustomUtil.*;
 
 /**
@@ -214,14 +213,13 @@ public class DummyClassMetadata extends ClassMetadata {
     @Override
     public Suggestion buildSuggestionForKey(Module module, FileType fileType,
         List<SuggestionNode> matchesRootTillMe, int numOfAncestors) {
-      Suggestion.SuggestionBuilder builder = Suggestion.builder()
-          .suggestionToDisplay(dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
-          .numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe)
-          .icon(nodeType.getIcon()).fileType(fileType);
+      Suggestion.SuggestionBuilder builder =
+          Suggestion.builder().numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe)
+              .icon(nodeType.getIcon()).fileType(fileType);
 
       PsiType psiType = getPsiType(module);
       if (psiType != null) {
-        builder.shortType(toClassNonQualifiedName(psiType));
+        builder.lazyShortType(() -> toClassNonQualifiedName(psiType));
       }
       return builder.build();
     }
@@ -24,7 +24,6 @@ import static com.intellij.util.containers.ContainerUtil.isEmpty;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.*;
 import static javax.naming.ldap.Rdn.unescapeValue;
-import static org.jetbrains.plugins.template.GenericUtil.dotDelimitedOriginalNames;
 import static org.jetbrains.plugins.template.PsiCustomUtil.*;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNode.sanitise;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType.ENUM;
@@ -188,12 +187,12 @@ public class EnumClassMetadata extends ClassMetadata {
       int numOfAncestors, boolean forValue, @NotNull PsiField value) {
     Suggestion.SuggestionBuilder builder =
         Suggestion.builder().numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe)
-            .shortType(toClassNonQualifiedName(type)).description(computeDocumentation(value))
-            .icon(ENUM.getIcon()).fileType(fileType);
+            .lazyShortType(() -> toClassNonQualifiedName(type))
+            .lazyDescription(() -> computeDocumentation(value)).icon(ENUM.getIcon())
+            .fileType(fileType);
+    // key suggestions derive the text to display from the matches, when needed
     if (forValue) {
       builder.suggestionToDisplay(requireNonNull(value.getName()));
-    } else {
-      builder.suggestionToDisplay(dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors));
     }
     builder.forValue(forValue);
     return builder.build();
@@ -13,7 +13,6 @@ import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType;
 
 import javax.annotation.Nullable;
-import javax.swing.*;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
@@ -160,12 +159,12 @@ public class GenericClassMemberWrapper implements SuggestionNode, SuggestionDocu
   @Override
   public Suggestion buildSuggestionForKey(Module module, FileType fileType,
       List<SuggestionNode> matchesRootTillMe, int numOfAncestors) {
-    Icon icon = doWithMemberReferredClassProxy(module, proxy -> proxy.getSuggestionNodeType(module),
-        SuggestionNodeType.UNKNOWN_CLASS).getIcon();
     Suggestion.SuggestionBuilder builder =
         Suggestion.builder().suggestionToDisplay(originalName).description(documentation)
             .shortType(shortType).numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe)
-            .icon(icon);
+            .lazyIcon(() -> doWithMemberReferredClassProxy(module,
+                proxy -> proxy.getSuggestionNodeType(module), SuggestionNodeType.UNKNOWN_CLASS)
+                .getIcon());
     if (deprecated) {
       builder.deprecationLevel(SpringConfigurationMetadataDeprecationLevel.warning);
     }
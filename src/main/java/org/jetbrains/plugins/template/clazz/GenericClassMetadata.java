@@ -15,7 +15,6 @@ import javax.annotation.Nullable;
 import java.util.*;
 
 import static com.intellij.util.containers.ContainerUtil.isEmpty;
-import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.*;
 import static org.jetbrains.plugins.template.GenericUtil.newListWithMembers;
 import static org.jetbrains.plugins.template.PsiCustomUtil.*;
@@ -96,13 +95,14 @@ public class GenericClassMetadata extends ClassMetadata {
       String pathSegment = pathSegments[pathSegmentStartIndex];
       if (childLookup != null && childLookup.containsKey(pathSegment)) {
         GenericClassMemberWrapper memberWrapper = childLookup.get(pathSegment);
-        matchesRootTillParentNode.add(memberWrapper);
+        List<SuggestionNode> matchesRootTillMember =
+            newListWithMembers(matchesRootTillParentNode, memberWrapper);
         boolean lastPathSegment = pathSegmentStartIndex == pathSegments.length - 1;
         if (lastPathSegment) {
-          return matchesRootTillParentNode;
+          return matchesRootTillMember;
         } else {
           return memberWrapper.getMemberReferredClassMetadataProxy(module)
-              .findDeepestSuggestionNode(module, matchesRootTillParentNode, pathSegments,
+              .findDeepestSuggestionNode(module, matchesRootTillMember, pathSegments,
                   pathSegmentStartIndex + 1);
         }
       }
@@ -140,13 +140,13 @@ public class GenericClassMetadata extends ClassMetadata {
             if (lastQuerySegment) {
               return wrappers.stream().map(wrapper -> wrapper
                   .buildSuggestionForKey(module, fileType,
-                      unmodifiableList(newListWithMembers(matchesRootTillParentNode, wrapper)),
+                      newListWithMembers(matchesRootTillParentNode, wrapper),
                       numOfAncestors)).collect(toCollection(TreeSet::new));
             } else {
               SortedSet<Suggestion> suggestions = null;
               for (GenericClassMemberWrapper wrapper : wrappers) {
                 List<SuggestionNode> pathRootTillCurrentNode =
-                    unmodifiableList(newListWithMembers(matchesRootTillParentNode, wrapper));
+                    newListWithMembers(matchesRootTillParentNode, wrapper);
                 Set<Suggestion> matchedSuggestions =
                     wrapper.getMemberReferredClassMetadataProxy(module)
                         .findKeySuggestionsForQueryPrefix(module, fileType, pathRootTillCurrentNode,
@@ -74,13 +74,14 @@ public class IterableClassMetadata extends ClassMetadata {
         assert directChildKeyMatch instanceof SuggestionNode;
         IterableKeySuggestionNode wrappedNode =
             new IterableKeySuggestionNode((SuggestionNode) directChildKeyMatch);
-        matchesRootTillParentNode.add(wrappedNode);
+        List<SuggestionNode> matchesRootTillWrappedNode =
+            newListWithMembers(matchesRootTillParentNode, wrappedNode);
         boolean lastPathSegment = pathSegmentStartIndex == pathSegments.length - 1;
         if (lastPathSegment) {
-          return matchesRootTillParentNode;
+          return matchesRootTillWrappedNode;
         } else {
           return wrappedNode
-              .findDeepestSuggestionNode(module, matchesRootTillParentNode, pathSegments,
+              .findDeepestSuggestionNode(module, matchesRootTillWrappedNode, pathSegments,
                   pathSegmentStartIndex + 1);
         }
       }
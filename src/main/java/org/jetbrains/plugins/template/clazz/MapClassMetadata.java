@@ -75,13 +75,14 @@ public class MapClassMetadata extends ClassMetadata {
       SuggestionDocumentationHelper directChildKeyMatch =
           keyProxy.findDirectChild(module, pathSegment);
       if (directChildKeyMatch != null) {
-        matchesRootTillParentNode.add(new MapKeySuggestionNode(directChildKeyMatch));
+        List<SuggestionNode> matchesRootTillKey = newListWithMembers(matchesRootTillParentNode,
+            new MapKeySuggestionNode(directChildKeyMatch));
         boolean lastPathSegment = pathSegmentStartIndex == pathSegments.length - 1;
         if (lastPathSegment) {
-          return matchesRootTillParentNode;
+          return matchesRootTillKey;
         } else {
           return doWithValueDelegateOrReturnNull(valueProxy -> valueProxy
-              .findDeepestSuggestionNode(module, matchesRootTillParentNode, pathSegments,
+              .findDeepestSuggestionNode(module, matchesRootTillKey, pathSegments,
                   pathSegmentStartIndex + 1));
         }
       }
@@ -0,0 +1,54 @@
+package org.jetbrains.plugins.template.model.metadata;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Archive url -> result of the last probe of the archive. Shared by all modules of a project, so that a jar is probed only once as long as it does not change on disk.
+ * Owner is expected to drop the archives that are no longer on the classpath of any module via {@link #retainAll(Collection)}
+ */
+public class ArchiveProbeCache {
+
+  private final Map<String, ProbedArchive> archiveUrlToProbedArchive = new ConcurrentHashMap<>();
+
+  /**
+   * @param archiveUrl url of the archive
+   * @param timeStamp  current timestamp of the archive
+   * @param length     current length of the archive
+   * @param probe      probes the archive, if it was never probed (or) has changed since
+   * @return container infos of the archive
+   */
+  List<MetadataContainerInfo> getOrProbe(String archiveUrl, long timeStamp, long length,
+      Supplier<List<MetadataContainerInfo>> probe) {
+    ProbedArchive probedArchive = archiveUrlToProbedArchive.get(archiveUrl);
+    if (probedArchive == null || probedArchive.timeStamp != timeStamp
+        || probedArchive.length != length) {
+      probedArchive = new ProbedArchive(timeStamp, length, probe.get());
+      archiveUrlToProbedArchive.put(archiveUrl, probedArchive);
+    }
+    return probedArchive.containerInfos;
+  }
+
+  /**
+   * @param liveContainerRefs container references that are still in use. Archive container references are the archive urls
+   */
+  public void retainAll(Collection<String> liveContainerRefs) {
+    archiveUrlToProbedArchive.keySet().retainAll(liveContainerRefs);
+  }
+
+  private static class ProbedArchive {
+    private final long timeStamp;
+    private final long length;
+    private final List<MetadataContainerInfo> containerInfos;
+
+    ProbedArchive(long timeStamp, long length, List<MetadataContainerInfo> containerInfos) {
+      this.timeStamp = timeStamp;
+      this.length = length;
+      this.containerInfos = containerInfos;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package org.jetbrains.plugins.template.model.metadata;
+
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Children of a node in the metadata tree, keyed by their sanitised names.
+ * <p>
+ * Most nodes have only a handful of children. These are held in a pair of parallel arrays sorted by name, which serve both exact & prefix lookups with a binary search.
+ * Once a node grows beyond {@link #MAX_ARRAY_SIZE} children, the children are moved to a {@link PatriciaTrie} instead. Either way, iteration happens in the sorted order of names
+ *
+ * @param <T> type of the child
+ */
+public class ChildIndex<T> {
+
+  /**
+   * Beyond this, binary search (& shifting of elements on insertion) costs more than the trie it saves
+   */
+  static final int MAX_ARRAY_SIZE = 16;
+  private static final int INITIAL_CAPACITY = 2;
+
+  @Nullable
+  private String[] names;
+  @Nullable
+  private Object[] children;
+  private int size;
+
+  /**
+   * Set only after the node is promoted, in which case the arrays are not used anymore
+   */
+  @Nullable
+  private Trie<String, T> trie;
+
+  public int size() {
+    return trie != null ? trie.size() : size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Nullable
+  public T get(String name) {
+    if (trie != null) {
+      return trie.get(name);
+    }
+    int index = indexOf(name);
+    return index >= 0 ? childAt(index) : null;
+  }
+
+  public boolean containsKey(String name) {
+    return get(name) != null;
+  }
+
+  public void put(String name, T child) {
+    if (trie != null) {
+      trie.put(name, child);
+      return;
+    }
+    int index = indexOf(name);
+    if (index >= 0) {
+      assert children != null;
+      children[index] = child;
+      return;
+    }
+    if (size == MAX_ARRAY_SIZE) {
+      promote();
+      assert trie != null;
+      trie.put(name, child);
+      return;
+    }
+    int insertionPoint = -(index + 1);
+    ensureCapacity();
+    assert names != null && children != null;
+    System.arraycopy(names, insertionPoint, names, insertionPoint + 1, size - insertionPoint);
+    System
+        .arraycopy(children, insertionPoint, children, insertionPoint + 1, size - insertionPoint);
+    names[insertionPoint] = name;
+    children[insertionPoint] = child;
+    size++;
+  }
+
+  public void remove(String name) {
+    if (trie != null) {
+      trie.remove(name);
+      return;
+    }
+    int index = indexOf(name);
+    if (index >= 0) {
+      assert names != null && children != null;
+      System.arraycopy(names, index + 1, names, index, size - index - 1);
+      System.arraycopy(children, index + 1, children, index, size - index - 1);
+      size--;
+      names[size] = null;
+      children[size] = null;
+    }
+  }
+
+  /**
+   * @return all children, sorted by name. Must not be modified by the caller
+   */
+  public Collection<T> values() {
+    if (trie != null) {
+      return unmodifiableCollection(trie.values());
+    }
+    return subList(0, size);
+  }
+
+  /**
+   * @param prefix sanitised prefix
+   * @return children whose name starts with the given prefix, sorted by name. Must not be modified by the caller
+   */
+  public Collection<T> prefixValues(String prefix) {
+    if (trie != null) {
+      return unmodifiableCollection(trie.prefixMap(prefix).values());
+    }
+    if (size == 0) {
+      return emptyList();
+    }
+    assert names != null;
+    int index = indexOf(prefix);
+    int from = index >= 0 ? index : -(index + 1);
+    int to = from;
+    while (to < size && names[to].startsWith(prefix)) {
+      to++;
+    }
+    return subList(from, to);
+  }
+
+  public void forEach(BiConsumer<String, T> consumer) {
+    if (trie != null) {
+      trie.forEach(consumer);
+      return;
+    }
+    for (int i = 0; i < size; i++) {
+      assert names != null;
+      consumer.accept(names[i], childAt(i));
+    }
+  }
+
+  private int indexOf(String name) {
+    if (size == 0) {
+      return -1;
+    }
+    assert names != null;
+    return Arrays.binarySearch(names, 0, size, name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private T childAt(int index) {
+    assert children != null;
+    return (T) children[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<T> subList(int from, int to) {
+    if (from == to) {
+      return emptyList();
+    }
+    assert children != null;
+    return unmodifiableList(Arrays.asList((T[]) children).subList(from, to));
+  }
+
+  private void ensureCapacity() {
+    if (names == null) {
+      names = new String[INITIAL_CAPACITY];
+      children = new Object[INITIAL_CAPACITY];
+    } else if (size == names.length) {
+      int newCapacity = Math.min(names.length * 2, MAX_ARRAY_SIZE);
+      names = Arrays.copyOf(names, newCapacity);
+      children = Arrays.copyOf(children, newCapacity);
+    }
+  }
+
+  private void promote() {
+    Trie<String, T> promoted = new PatriciaTrie<>();
+    forEach(promoted::put);
+    trie = promoted;
+    names = null;
+    children = null;
+    size = 0;
+  }
+
+}
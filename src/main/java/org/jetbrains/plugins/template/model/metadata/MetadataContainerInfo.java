@@ -11,10 +11,12 @@ import lombok.ToString;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static com.intellij.openapi.fileTypes.FileTypes.ARCHIVE;
 import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Stream.of;
 
@@ -26,6 +28,12 @@ public class MetadataContainerInfo {
       "spring-configuration-metadata.json";
   public static final String ADDITIONAL_SPRING_CONFIGURATION_METADATA_JSON =
       "additional-spring-configuration-metadata.json";
+  /**
+   * Spring boot (both annotation processor & the packaged jars) places metadata files only under this directory.
+   * If set to true, `spring.assistant.metadata.deepScan` system property restores the older behaviour of walking the whole container looking for metadata files
+   */
+  private static final String METADATA_DIRECTORY = "META-INF/";
+  private static final boolean DEEP_SCAN = Boolean.getBoolean("spring.assistant.metadata.deepScan");
   /**
    * Can point to archive/directory containing the metadata file
    */
@@ -61,6 +69,20 @@ public class MetadataContainerInfo {
     }
   }
 
+  /**
+   * @param fileContainer classpath root
+   * @return url of the archive/directory that backs the classpath root
+   */
+  public static String getContainerUrl(VirtualFile fileContainer) {
+    if (fileContainer.getFileType() == ARCHIVE) {
+      VirtualFile archiveFile = JarFileSystem.getInstance().getLocalVirtualFileFor(fileContainer);
+      if (archiveFile != null) {
+        return archiveFile.getUrl();
+      }
+    }
+    return fileContainer.getUrl();
+  }
+
   private static VirtualFile getContainerFile(VirtualFile fileContainer) {
     if (fileContainer.getFileType() == ARCHIVE) {
       return requireNonNull(JarFileSystem.getInstance().getLocalVirtualFileFor(fileContainer));
@@ -70,13 +92,22 @@ public class MetadataContainerInfo {
   }
 
   private static VirtualFile findMetadataFile(VirtualFile root, String metadataFileName) {
+    if (DEEP_SCAN) {
+      return findMetadataFileRecursively(root, metadataFileName);
+    }
+    VirtualFile metadataFile = root.findFileByRelativePath(METADATA_DIRECTORY + metadataFileName);
+    return metadataFile != null && !metadataFile.isDirectory() ? metadataFile : null;
+  }
+
+  private static VirtualFile findMetadataFileRecursively(VirtualFile root,
+      String metadataFileName) {
     if (!root.is(VFileProperty.SYMLINK)) {
       //noinspection UnsafeVfsRecursion
       for (VirtualFile child : asList(root.getChildren())) {
         if (child.getName().equals(metadataFileName)) {
           return child;
         }
-        VirtualFile matchedFile = findMetadataFile(child, metadataFileName);
+        VirtualFile matchedFile = findMetadataFileRecursively(child, metadataFileName);
         if (matchedFile != null) {
           return matchedFile;
         }
@@ -85,10 +116,28 @@ public class MetadataContainerInfo {
     return null;
   }
 
-  public static Collection<MetadataContainerInfo> newInstances(VirtualFile fileContainer) {
-    Collection<MetadataContainerInfo> containerInfos = new ArrayList<>();
+  /**
+   * @param fileContainer     classpath root
+   * @param archiveProbeCache results of earlier probes of the archives
+   * @return container infos of the classpath root
+   */
+  public static Collection<MetadataContainerInfo> newInstances(VirtualFile fileContainer,
+      ArchiveProbeCache archiveProbeCache) {
     VirtualFile containerFile = getContainerFile(fileContainer);
     boolean archive = fileContainer.getFileType() == ARCHIVE;
+    if (archive) {
+      // archives are shared by lot of modules & rarely change, lets probe each of them only once (including the ones without metadata)
+      return archiveProbeCache
+          .getOrProbe(containerFile.getUrl(), containerFile.getTimeStamp(),
+              containerFile.getLength(),
+              () -> unmodifiableList(probe(fileContainer, containerFile, true)));
+    }
+    return probe(fileContainer, containerFile, false);
+  }
+
+  private static List<MetadataContainerInfo> probe(VirtualFile fileContainer,
+      VirtualFile containerFile, boolean archive) {
+    List<MetadataContainerInfo> containerInfos = new ArrayList<>();
     MetadataContainerInfo containerInfo =
         newInstance(fileContainer, containerFile, SPRING_CONFIGURATION_METADATA_JSON, archive);
     containerInfos.add(containerInfo);
@@ -112,8 +161,7 @@ public class MetadataContainerInfo {
       // since build might auto generate the metadata file in the project, its better to rely on
       builder.fileUrl(metadataFile.getUrl())
           .containerArchiveOrFileRef(archive ? containerFile.getUrl() : metadataFile.getUrl())
-          .marker(
-              archive ? metadataFile.getModificationCount() : metadataFile.getModificationStamp());
+          .marker(markerOf(metadataFile, archive));
     } else {
       builder.containerArchiveOrFileRef(containerFile.getUrl())
           .marker(containerFile.getModificationCount());
@@ -121,6 +169,30 @@ public class MetadataContainerInfo {
     return builder.build();
   }
 
+  /**
+   * Rebuilds container info for a metadata file that was seen in an earlier session, without having to walk the container again
+   *
+   * @param containerArchiveOrFileRef container reference as seen in the earlier session
+   * @param fileUrl                   url of the metadata file as seen in the earlier session
+   * @param archive                   whether the container is an archive
+   * @return container info as of now, null if the metadata file no longer exists
+   */
+  @Nullable
+  public static MetadataContainerInfo restore(String containerArchiveOrFileRef, String fileUrl,
+      boolean archive) {
+    VirtualFile metadataFile = VirtualFileManager.getInstance().findFileByUrl(fileUrl);
+    if (metadataFile == null || !metadataFile.isValid()) {
+      return null;
+    }
+    return MetadataContainerInfo.builder().archive(archive)
+        .containerArchiveOrFileRef(containerArchiveOrFileRef).fileUrl(fileUrl)
+        .marker(markerOf(metadataFile, archive)).build();
+  }
+
+  private static long markerOf(VirtualFile metadataFile, boolean archive) {
+    return archive ? metadataFile.getModificationCount() : metadataFile.getModificationStamp();
+  }
+
   public boolean isModified(MetadataContainerInfo other) {
     return this.marker != other.marker;
   }
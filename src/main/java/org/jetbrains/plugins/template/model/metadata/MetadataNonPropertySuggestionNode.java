@@ -2,19 +2,17 @@ package org.jetbrains.plugins.template.model.metadata;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.PsiType;
-import gnu.trove.THashMap;
-import gnu.trove.THashSet;
 
 import lombok.*;
-import org.apache.commons.collections4.Trie;
-import org.apache.commons.collections4.trie.PatriciaTrie;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.template.PsiCustomUtil;
 import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataGroup;
 import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionCollector;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType;
 
@@ -27,7 +25,6 @@ import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.jetbrains.plugins.template.GenericUtil.newListWithMembers;
-import static org.jetbrains.plugins.template.GenericUtil.newSingleElementSortedSet;
 import static org.jetbrains.plugins.template.PsiCustomUtil.safeGetValidType;
 
 /**
@@ -124,36 +121,92 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
   /**
    * Set of sources these suggestions belong to
    */
-  private Set<String> belongsTo;
+  private BitSet belongsTo;
   /**
-   * Child name -> child node. Aids in quick lookup. NOTE: All keys are sanitized
+   * Child name -> child node for the nodes at next level. Aids in both quick lookup & prefix based searching. NOTE: All keys are sanitized
    */
   @Nullable
-  private Map<String, MetadataSuggestionNode> childLookup;
-
-  /**
-   * Child trie for the nodes at next level, aids in prefix based searching. NOTE: All keys are sanitized
-   */
-  @Nullable
-  private Trie<String, MetadataSuggestionNode> childrenTrie;
+  private ChildIndex<MetadataSuggestionNode> children;
 
   /**
    * @param originalName name that is not sanitised
    * @param parent       parent MetadataNonPropertySuggestionNode node
-   * @param belongsTo    file/jar containing this property
+   * @param belongsTo    id of file/jar containing this property
    * @return newly constructed group node
    */
   public static MetadataNonPropertySuggestionNode newInstance(String originalName,
-      @Nullable MetadataNonPropertySuggestionNode parent, String belongsTo) {
+      @Nullable MetadataNonPropertySuggestionNode parent, int belongsTo) {
     MetadataNonPropertySuggestionNodeBuilder builder =
         MetadataNonPropertySuggestionNode.builder().name(SuggestionNode.sanitise(originalName))
             .originalName(originalName).parent(parent);
-    Set<String> belongsToSet = new THashSet<>();
-    belongsToSet.add(belongsTo);
+    BitSet belongsToSet = new BitSet();
+    belongsToSet.set(belongsTo);
     builder.belongsTo(belongsToSet);
     return builder.build();
   }
 
+  @Override
+  public MetadataNonPropertySuggestionNode deepCopy(
+      @Nullable MetadataNonPropertySuggestionNode parent) {
+    MetadataNonPropertySuggestionNode copy =
+        MetadataNonPropertySuggestionNode.builder().name(name).originalName(originalName)
+            .group(group).parent(parent).belongsTo((BitSet) belongsTo.clone()).build();
+    if (hasChildren()) {
+      assert children != null;
+      ChildIndex<MetadataSuggestionNode> childrenCopy = new ChildIndex<>();
+      children.forEach((childName, child) -> childrenCopy.put(childName, child.deepCopy(copy)));
+      copy.children = childrenCopy;
+    }
+    return copy;
+  }
+
+  /**
+   * Copies this node alone, so that the copy can take new children (or) owners without affecting searches that are being served by this node. Children are shared with this node & are left as is, so their parent still refers to this node
+   *
+   * @param parent parent of the copy
+   * @return copy of this node
+   */
+  public MetadataNonPropertySuggestionNode copyWithSharedChildren(
+      @Nullable MetadataNonPropertySuggestionNode parent) {
+    MetadataNonPropertySuggestionNode copy =
+        MetadataNonPropertySuggestionNode.builder().name(name).originalName(originalName)
+            .group(group).parent(parent).belongsTo((BitSet) belongsTo.clone()).build();
+    if (hasChildren()) {
+      assert children != null;
+      ChildIndex<MetadataSuggestionNode> childrenCopy = new ChildIndex<>();
+      children.forEach(childrenCopy::put);
+      copy.children = childrenCopy;
+    }
+    return copy;
+  }
+
+  /**
+   * @param child child of this node
+   * @return false if the child is shared with the node this node was copied from
+   */
+  public boolean owns(MetadataSuggestionNode child) {
+    return child.getParent() == this;
+  }
+
+  /**
+   * Finds the child with the given name, copying it first if it is still shared with the node this node was copied from (child's parent tells whom the child belongs to). Property children are copied along with their property, so that hints can be added to the copy
+   *
+   * @param name name of the child
+   * @return child owned by this node, null if there is no child with the name
+   */
+  @Nullable
+  public MetadataSuggestionNode findOwnChild(String name) {
+    MetadataSuggestionNode child = children != null ? children.get(name) : null;
+    if (child == null || owns(child)) {
+      return child;
+    }
+    MetadataSuggestionNode copy = child.isProperty() ?
+        child.deepCopy(this) :
+        ((MetadataNonPropertySuggestionNode) child).copyWithSharedChildren(this);
+    children.put(name, copy);
+    return copy;
+  }
+
   @Override
   public MetadataSuggestionNode findDeepestMetadataNode(String[] pathSegments,
       int pathSegmentStartIndex, boolean matchAllSegments) {
@@ -166,9 +219,9 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
       boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
       String pathSegment = pathSegments[pathSegmentStartIndex];
       if (hasChildren()) {
-        assert childLookup != null;
-        if (childLookup.containsKey(pathSegment)) {
-          MetadataSuggestionNode child = childLookup.get(pathSegment);
+        assert children != null;
+        MetadataSuggestionNode child = children.get(pathSegment);
+        if (child != null) {
           if (lastSegment) {
             deepestMatch = child;
           } else {
@@ -197,15 +250,16 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
       String currentPathSegment = pathSegments[pathSegmentStartIndex];
       boolean lastSegment = pathSegmentStartIndex == (pathSegments.length - 1);
       if (hasChildren()) {
-        assert childLookup != null;
-        if (childLookup.containsKey(currentPathSegment)) {
-          MetadataSuggestionNode child = childLookup.get(currentPathSegment);
-          matchesRootTillMe.add(child);
+        assert children != null;
+        MetadataSuggestionNode child = children.get(currentPathSegment);
+        if (child != null) {
+          List<SuggestionNode> matchesRootTillChild = newListWithMembers(matchesRootTillMe, child);
           if (lastSegment) {
-            deepestMatch = matchesRootTillMe;
+            deepestMatch = matchesRootTillChild;
           } else {
-            deepestMatch = child.findDeepestSuggestionNode(module, matchesRootTillMe, pathSegments,
-                pathSegmentStartIndex + 1);
+            deepestMatch = child
+                .findDeepestSuggestionNode(module, matchesRootTillChild, pathSegments,
+                    pathSegmentStartIndex + 1);
           }
         }
       } else if (lastSegment && name.equals(currentPathSegment)) {
@@ -219,14 +273,14 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
   }
 
   public void addChildren(Module module, SpringConfigurationMetadataGroup group,
-      String[] rawPathSegments, int startIndex, String belongsTo) {
+      String[] rawPathSegments, int startIndex, int belongsTo) {
     MetadataNonPropertySuggestionNode groupNode =
         addChildren(rawPathSegments, startIndex, rawPathSegments.length - 1, belongsTo);
     groupNode.setGroup(module, group);
   }
 
   public void addChildren(SpringConfigurationMetadataProperty property, String[] rawPathSegments,
-                          int startIndex, String belongsTo) {
+                          int startIndex, int belongsTo) {
     MetadataNonPropertySuggestionNode parentNode;
     // since last property is the actual property, lets only add children only till last but one
     int endIndexIncl = rawPathSegments.length - 2;
@@ -243,40 +297,51 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
   @Override
   @Nullable
   public SortedSet<Suggestion> findKeySuggestionsForQueryPrefix(Module module, FileType fileType,
-                                                                List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
-                                                                int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude) {
+      List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+      int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude) {
+    SortedSet<Suggestion> suggestions = new TreeSet<>();
+    if (collectKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe, numOfAncestors,
+        querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude, suggestions::add)) {
+      return suggestions;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean collectKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+      List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+      int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude,
+      SuggestionCollector collector) {
     boolean lookingForConcreteNode = querySegmentPrefixStartIndex >= querySegmentPrefixes.length;
     if (lookingForConcreteNode) {
       if (isGroup()) {
         // If we have only one child, lets send the child value directly instead of this node. This way user does not need trigger suggestion for level, esp. when we know there will is only be one child
         if (hasOnlyOneChild(module)) {
-          assert childrenTrie != null;
+          assert children != null;
           return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
               numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-              childrenTrie.values());
+              children.values(), collector);
         } else { // either there are no children/multiple children are present. Lets return suggestions
           assert group != null;
-          return newSingleElementSortedSet(
-              group.newSuggestion(fileType, matchesRootTillMe, numOfAncestors));
+          collector.collect(group.newSuggestion(fileType, matchesRootTillMe, numOfAncestors));
+          return true;
         }
       } else { // intermediate node, lets get all next level groups & properties
-        assert childrenTrie != null;
+        assert children != null;
         return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
             numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-            childrenTrie.values());
+            children.values(), collector);
       }
     } else {
       if (hasChildren()) {
-        assert childrenTrie != null;
-        assert childLookup != null;
+        assert children != null;
         String querySegmentPrefix = querySegmentPrefixes[querySegmentPrefixStartIndex];
-        SortedMap<String, MetadataSuggestionNode> sortedPrefixToMetadataNode =
-            childrenTrie.prefixMap(querySegmentPrefix);
-        Collection<MetadataSuggestionNode> matchedChildren = sortedPrefixToMetadataNode.values();
+        Collection<MetadataSuggestionNode> matchedChildren =
+            children.prefixValues(querySegmentPrefix);
 
         Set<MetadataSuggestionNode> exclusionMembers = null;
         if (siblingsToExclude != null) {
-          exclusionMembers = siblingsToExclude.stream().map(childLookup::get).collect(toSet());
+          exclusionMembers = siblingsToExclude.stream().map(children::get).collect(toSet());
         }
 
         if (!isEmpty(exclusionMembers) && !isEmpty(matchedChildren)) {
@@ -286,35 +351,25 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
                   .collect(toList());
         }
 
-        if (matchedChildren.size() != 0) {
-          SortedSet<Suggestion> suggestions =
-              addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
-                  numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex + 1,
-                  matchedChildren);
-          // If the leaf is deprecated (management.context-path), it will shadow deeper match (management.server.servlet.context-path)
-          if (suggestions != null) {
-            return suggestions;
-          } else {
-            // lets search in the next level
-            return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
-                numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-                computeChildrenToIterateOver(childLookup, exclusionMembers));
-          }
-        } else {
-          // lets search in the next level
-          return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
-              numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
-              computeChildrenToIterateOver(childLookup, exclusionMembers));
+        // If the leaf is deprecated (management.context-path), it will shadow deeper match (management.server.servlet.context-path)
+        if (matchedChildren.size() != 0 && addChildToMatchesAndSearchInNextLevel(module, fileType,
+            matchesRootTillMe, numOfAncestors, querySegmentPrefixes,
+            querySegmentPrefixStartIndex + 1, matchedChildren, collector)) {
+          return true;
         }
+        // lets search in the next level
+        return addChildToMatchesAndSearchInNextLevel(module, fileType, matchesRootTillMe,
+            numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex,
+            computeChildrenToIterateOver(children, exclusionMembers), collector);
       }
-      return null;
+      return false;
     }
   }
 
   @Override
   protected boolean hasOnlyOneChild(Module module) {
-    return childrenTrie != null && childrenTrie.size() == 1;
-    //     && childrenTrie.values().stream()
+    return children != null && children.size() == 1;
+    //     && children.values().stream()
     //        .allMatch(MetadataSuggestionNode::hasOnlyOneChild)
   }
 
@@ -323,8 +378,8 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
     StringBuilder builder = new StringBuilder(originalName)
         .append(isRoot() ? "(root + group)" : (isGroup() ? "(group)" : "(intermediate)"))
         .append("\n");
-    if (childLookup != null) {
-      childLookup.forEach(
+    if (children != null) {
+      children.forEach(
           (k, v) -> builder.append(v.toTree().trim().replaceAll("^", "  ").replaceAll("\n", "\n  "))
               .append("\n"));
     }
@@ -332,36 +387,16 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
   }
 
   /**
-   * @param containerPath Represents path to the metadata file container
-   * @return true if no children left & this item does not belong to any other source
+   * @param name sanitised name of the child to remove
    */
-  @Override
-  public boolean removeRefCascadeDown(String containerPath) {
-    belongsTo.remove(containerPath);
-    // If the current node & all its children belong to a single file, lets remove the whole tree
-    if (belongsTo.size() == 0) {
-      return true;
-    }
-
+  void removeChild(String name) {
     if (hasChildren()) {
-      assert childLookup != null;
-      assert childrenTrie != null;
-      Iterator<MetadataSuggestionNode> iterator = childrenTrie.values().iterator();
-      while (iterator.hasNext()) {
-        MetadataSuggestionNode child = iterator.next();
-        boolean canRemoveReference = child.removeRefCascadeDown(containerPath);
-        if (canRemoveReference) {
-          iterator.remove();
-          childLookup.remove(child.getName());
-          childrenTrie.remove(child.getName());
-        }
-      }
+      assert children != null;
+      children.remove(name);
       if (!hasChildren()) {
-        childLookup = null;
-        childrenTrie = null;
+        children = null;
       }
     }
-    return false;
   }
 
   @Override
@@ -415,8 +450,9 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
     return true;
   }
 
-  private boolean hasChildren() {
-    return childrenTrie != null && childrenTrie.size() != 0;
+  @Override
+  protected boolean hasChildren() {
+    return children != null && !children.isEmpty();
   }
 
   @NotNull
@@ -439,64 +475,58 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
   public void refreshClassProxy(Module module) {
     updateGroupType(module, group);
     if (hasChildren()) {
-      assert childLookup != null;
-      childLookup.values().forEach(child -> child.refreshClassProxy(module));
+      assert children != null;
+      children.values().forEach(child -> child.refreshClassProxy(module));
     }
   }
 
   private Collection<MetadataSuggestionNode> computeChildrenToIterateOver(
-      @NotNull Map<String, MetadataSuggestionNode> childLookup,
+      @NotNull ChildIndex<MetadataSuggestionNode> children,
       Set<MetadataSuggestionNode> exclusionMembers) {
     Collection<MetadataSuggestionNode> childrenToIterateOver;
     if (!isEmpty(exclusionMembers)) {
       childrenToIterateOver =
-          childLookup.values().stream().filter(value -> !exclusionMembers.contains(value))
+          children.values().stream().filter(value -> !exclusionMembers.contains(value))
               .collect(toList());
     } else {
-      childrenToIterateOver = childLookup.values();
+      childrenToIterateOver = children.values();
     }
     return childrenToIterateOver;
   }
 
   private void addProperty(SpringConfigurationMetadataProperty property, String originalName,
-      String belongsTo) {
+      int belongsTo) {
     addRefCascadeTillRoot(belongsTo);
     if (!hasChildren()) {
-      childLookup = new THashMap<>();
-      childrenTrie = new PatriciaTrie<>();
+      children = new ChildIndex<>();
     }
 
-    assert childLookup != null;
-    assert childrenTrie != null;
+    assert children != null;
     MetadataSuggestionNode childNode =
         MetadataPropertySuggestionNode.newInstance(originalName, property, this, belongsTo);
 
     String name = SuggestionNode.sanitise(originalName);
-    childLookup.put(name, childNode);
-    childrenTrie.put(name, childNode);
+    children.put(name, childNode);
   }
 
   private MetadataNonPropertySuggestionNode addChildren(String[] rawPathSegments, int startIndex,
-      int endIndexIncl, String belongsTo) {
+      int endIndexIncl, int belongsTo) {
     addRefCascadeTillRoot(belongsTo);
     if (!hasChildren()) {
-      childLookup = new THashMap<>();
-      childrenTrie = new PatriciaTrie<>();
+      children = new ChildIndex<>();
     }
 
-    assert childLookup != null;
-    assert childrenTrie != null;
+    assert children != null;
 
     String rawPathSegment = rawPathSegments[startIndex];
     String pathSegment = SuggestionNode.sanitise(rawPathSegment);
     MetadataNonPropertySuggestionNode childNode =
-        MetadataNonPropertySuggestionNode.class.cast(childLookup.get(pathSegment));
+        MetadataNonPropertySuggestionNode.class.cast(children.get(pathSegment));
     if (childNode == null) {
       childNode = MetadataNonPropertySuggestionNode.newInstance(rawPathSegment, this, belongsTo);
       childNode.setParent(this);
 
-      childLookup.put(pathSegment, childNode);
-      childrenTrie.put(pathSegment, childNode);
+      children.put(pathSegment, childNode);
     }
 
     // If this is the last segment, lets set group
@@ -507,25 +537,28 @@ public class MetadataNonPropertySuggestionNode extends MetadataSuggestionNode {
     }
   }
 
-  private SortedSet<Suggestion> addChildToMatchesAndSearchInNextLevel(Module module,
-      FileType fileType, List<SuggestionNode> matchesRootTillParentNode, int numOfAncestors,
+  /**
+   * @return true if any of the children matched the query
+   */
+  private boolean addChildToMatchesAndSearchInNextLevel(Module module, FileType fileType,
+      List<SuggestionNode> matchesRootTillParentNode, int numOfAncestors,
       String[] querySegmentPrefixes, int querySegmentPrefixStartIndex,
-      Collection<MetadataSuggestionNode> childNodes) {
-    SortedSet<Suggestion> suggestions = null;
+      Collection<MetadataSuggestionNode> childNodes, SuggestionCollector collector) {
+    boolean matched = false;
     for (MetadataSuggestionNode child : childNodes) {
+      // lets not keep searching for a keystroke that is already superseded
+      ProgressManager.checkCanceled();
+      if (collector.isStopped()) {
+        break;
+      }
       List<SuggestionNode> matchesRootTillChild =
-          unmodifiableList(newListWithMembers(matchesRootTillParentNode, child));
-      Set<Suggestion> matchedSuggestions = child
-          .findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillChild, numOfAncestors,
-              querySegmentPrefixes, querySegmentPrefixStartIndex, null);
-      if (matchedSuggestions != null) {
-        if (suggestions == null) {
-          suggestions = new TreeSet<>();
-        }
-        suggestions.addAll(matchedSuggestions);
+          newListWithMembers(matchesRootTillParentNode, child);
+      if (child.collectKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillChild,
+          numOfAncestors, querySegmentPrefixes, querySegmentPrefixStartIndex, null, collector)) {
+        matched = true;
       }
     }
-    return suggestions;
+    return matched;
   }
 
   private void updateGroupType(Module module, SpringConfigurationMetadataGroup group) {
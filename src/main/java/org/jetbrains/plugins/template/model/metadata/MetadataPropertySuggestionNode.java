@@ -1,7 +1,6 @@
 package org.jetbrains.plugins.template.model.metadata;
 
 import com.intellij.openapi.module.Module;
-import gnu.trove.THashSet;
 
 import lombok.*;
 import org.jetbrains.annotations.NotNull;
@@ -12,6 +11,7 @@ import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNodeType;
 
 import javax.annotation.Nullable;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
@@ -44,9 +44,9 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
   @Nullable
   private MetadataNonPropertySuggestionNode parent;
   /**
-   * Set of sources these suggestions belong to
+   * Ids of sources these suggestions belong to
    */
-  private Set<String> belongsTo;
+  private BitSet belongsTo;
   // TODO: Make sure that this will be part of search only if type & sourceType are part of the class path
   private SpringConfigurationMetadataProperty property;
 
@@ -54,21 +54,29 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
    * @param originalName name that is not sanitised
    * @param property     property to associate
    * @param parent       parent MetadataNonPropertySuggestionNode node
-   * @param belongsTo    file/jar containing this property
+   * @param belongsTo    id of file/jar containing this property
    * @return newly constructed property node
    */
   public static MetadataPropertySuggestionNode newInstance(String originalName,
       @NotNull SpringConfigurationMetadataProperty property,
-      @Nullable MetadataNonPropertySuggestionNode parent, String belongsTo) {
+      @Nullable MetadataNonPropertySuggestionNode parent, int belongsTo) {
     MetadataPropertySuggestionNodeBuilder builder =
         MetadataPropertySuggestionNode.builder().name(SuggestionNode.sanitise(originalName))
             .originalName(originalName).property(property).parent(parent);
-    Set<String> belongsToSet = new THashSet<>();
-    belongsToSet.add(belongsTo);
+    BitSet belongsToSet = new BitSet();
+    belongsToSet.set(belongsTo);
     builder.belongsTo(belongsToSet);
     return builder.build();
   }
 
+  @Override
+  public MetadataPropertySuggestionNode deepCopy(
+      @Nullable MetadataNonPropertySuggestionNode parent) {
+    return MetadataPropertySuggestionNode.builder().name(name).originalName(originalName)
+        .parent(parent).belongsTo((BitSet) belongsTo.clone()).property(property.copyWithHints())
+        .build();
+  }
+
   /**
    * A property node can represent either leaf/an object depending on `type` & `hint`s associated with `SpringConfigurationMetadataProperty`
    *
@@ -212,10 +220,8 @@ public class MetadataPropertySuggestionNode extends MetadataSuggestionNode {
   }
 
   @Override
-  public boolean removeRefCascadeDown(String containerPath) {
-    belongsTo.remove(containerPath);
-    // If the current node & all its children belong to a single file, lets remove the whole tree
-    return belongsTo.size() == 0;
+  protected boolean hasChildren() {
+    return false;
   }
 
   @Override
@@ -3,13 +3,14 @@ package org.jetbrains.plugins.template.model.metadata;
 import com.intellij.openapi.module.Module;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.template.PathList;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
 
 import javax.annotation.Nullable;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.Stack;
 
@@ -48,24 +49,58 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
     return findValueSuggestionsForPrefix(module, fileType, matchesRootTillMe, prefix, null);
   }
 
-  public void addRefCascadeTillRoot(String containerPath) {
+  /**
+   * @param containerId id of the container, as handed out by the container registry of the project
+   */
+  public void addRefCascadeTillRoot(int containerId) {
     MetadataSuggestionNode node = this;
     do {
-      if (node.getBelongsTo().contains(containerPath)) {
+      if (node.getBelongsTo().get(containerId)) {
         break;
       }
-      node.getBelongsTo().add(containerPath);
+      node.getBelongsTo().set(containerId);
       node = node.getParent();
     } while (node != null && !node.isRoot());
   }
 
-  public abstract Set<String> getBelongsTo();
+  /**
+   * @return ids of the containers this node belongs to
+   */
+  public abstract BitSet getBelongsTo();
 
   /**
-   * @param containerPath Represents path to the metadata file container
-   * @return true if no children left & this item does not belong to any other source
+   * Copies this node along with the complete subtree under it, so that the copy can be modified without affecting searches that are being served by this node
+   *
+   * @param parent parent of the copy
+   * @return copy of the subtree rooted at this node
    */
-  public abstract boolean removeRefCascadeDown(String containerPath);
+  public abstract MetadataSuggestionNode deepCopy(@Nullable MetadataNonPropertySuggestionNode parent);
+
+  /**
+   * Reverse of {@link #addRefCascadeTillRoot(int)}. Removes the container from this node & its ancestors and then prunes the nodes that are left with neither an owner nor a child, bottom up
+   *
+   * @param containerId id of the metadata file container
+   * @return true if the root itself is left with neither an owner nor a child, in which case the caller is expected to remove the whole tree
+   */
+  public boolean removeRefCascadeTillRoot(int containerId) {
+    MetadataSuggestionNode node = this;
+    // ancestors of a node that does not belong to the container are either roots that are created by other containers (or) are already taken care of by an earlier removal
+    while (node != null && node.getBelongsTo().get(containerId)) {
+      node.getBelongsTo().clear(containerId);
+      node = node.getParent();
+    }
+
+    node = this;
+    while (node.getBelongsTo().isEmpty() && !node.hasChildren()) {
+      MetadataNonPropertySuggestionNode parent = node.getParent();
+      if (parent == null) {
+        return true;
+      }
+      parent.removeChild(node.getName());
+      node = parent;
+    }
+    return false;
+  }
 
   /**
    * During reindexing lets make sure that we refresh references to proxies so that subsequent searches would be faster
@@ -74,7 +109,7 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
    */
   public abstract void refreshClassProxy(Module module);
 
-  protected abstract String getName();
+  public abstract String getName();
 
   @NotNull
   public abstract String getOriginalName();
@@ -84,6 +119,8 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
 
   protected abstract boolean isRoot();
 
+  protected abstract boolean hasChildren();
+
   /**
    * @return whether the node expects any children or not
    */
@@ -106,6 +143,17 @@ public abstract class MetadataSuggestionNode implements SuggestionNode {
     return hopCount;
   }
 
+  /**
+   * @return nodes starting from the root till this node (both inclusive)
+   */
+  public List<SuggestionNode> getNodesFromRoot() {
+    MetadataSuggestionNode parent = getParent();
+    if (parent == null) {
+      return PathList.of(this);
+    }
+    return PathList.append(parent.getNodesFromRoot(), this);
+  }
+
   public String getPathFromRoot(Module module) {
     Stack<String> leafTillRoot = new Stack<>();
     MetadataSuggestionNode current = this;
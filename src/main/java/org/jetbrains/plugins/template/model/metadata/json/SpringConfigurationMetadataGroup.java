@@ -6,7 +6,6 @@ import com.intellij.codeInsight.documentation.DocumentationManager;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.plugins.template.GenericUtil;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
@@ -81,11 +80,23 @@ public class SpringConfigurationMetadataGroup {
     return builder.toString();
   }
 
+  /**
+   * @return copy of the metadata as read from the metadata file. The node type is module specific & hence is not carried over
+   */
+  public SpringConfigurationMetadataGroup copy() {
+    SpringConfigurationMetadataGroup copy = new SpringConfigurationMetadataGroup();
+    copy.name = name;
+    copy.className = className;
+    copy.description = description;
+    copy.sourceType = sourceType;
+    copy.sourceMethod = sourceMethod;
+    return copy;
+  }
+
   public Suggestion newSuggestion(FileType fileType, List<SuggestionNode> matchesRootTillMe,
                                   int numOfAncestors) {
-    return Suggestion.builder().suggestionToDisplay(
-        GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
-        .description(description).shortType(shortenedType(className)).numOfAncestors(numOfAncestors)
+    return Suggestion.builder().description(description)
+        .lazyShortType(() -> shortenedType(className)).numOfAncestors(numOfAncestors)
         .matchesTopFirst(matchesRootTillMe).icon(nodeType.getIcon()).fileType(fileType).build();
   }
 
@@ -28,9 +28,11 @@ public class SpringConfigurationMetadataHint implements GsonPostProcessable {
   @Getter
   private String name;
   @Setter
+  @Getter
   @Nullable
   private SpringConfigurationMetadataHintValue[] values;
   @Setter
+  @Getter
   @Nullable
   private SpringConfigurationMetadataValueProvider[] providers;
 
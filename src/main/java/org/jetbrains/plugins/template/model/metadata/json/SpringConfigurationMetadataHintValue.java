@@ -6,7 +6,6 @@ import com.intellij.psi.PsiType;
 
 import lombok.*;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.plugins.template.GenericUtil;
 import org.jetbrains.plugins.template.clazz.MetadataProxy;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
@@ -83,12 +82,11 @@ public class SpringConfigurationMetadataHintValue {
       List<SuggestionNode> matchesRootTillParentNode, int numOfAncestors, SuggestionNode match,
       @Nullable PsiType keyType) {
     List<SuggestionNode> matchesRootTillMe = newListWithMembers(matchesRootTillParentNode, match);
-    Suggestion.SuggestionBuilder builder = Suggestion.builder().suggestionToDisplay(
-        GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
-        .description(description).numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe);
+    Suggestion.SuggestionBuilder builder = Suggestion.builder().description(description)
+        .numOfAncestors(numOfAncestors).matchesTopFirst(matchesRootTillMe);
 
     if (keyType != null) {
-      builder.shortType(toClassNonQualifiedName(keyType));
+      builder.lazyShortType(() -> toClassNonQualifiedName(keyType));
       builder.icon(SuggestionNodeType.ENUM.getIcon());
     }
     return builder.fileType(fileType).build();
@@ -125,7 +123,7 @@ public class SpringConfigurationMetadataHintValue {
             .matchesTopFirst(matchesRootTillLeaf).numOfAncestors(matchesRootTillLeaf.size());
 
     if (valueType != null) {
-      builder.shortType(shortenedType(valueType.getCanonicalText()));
+      builder.lazyShortType(() -> shortenedType(valueType.getCanonicalText()));
       builder.icon(SuggestionNodeType.ENUM.getIcon());
     }
 
@@ -10,7 +10,6 @@ import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.plugins.template.GenericUtil;
 import org.jetbrains.plugins.template.PsiCustomUtil;
 import org.jetbrains.plugins.template.clazz.MapClassMetadataProxy;
 import org.jetbrains.plugins.template.clazz.MetadataProxy;
@@ -53,28 +52,33 @@ public class SpringConfigurationMetadataProperty
   private String name;
   @Nullable
   @Setter
+  @Getter
   @SerializedName("type")
   private String className;
   @Nullable
   @Setter
+  @Getter
   private String description;
   /**
    * The class name of the source that contributed this PROPERTY. For example, if the PROPERTY were from a class annotated with @ConfigurationProperties, this attribute would contain the fully qualified name of that class. If the source type is unknown, it may be omitted.
    */
   @Nullable
   @Setter
+  @Getter
   private String sourceType;
   /**
    * Specify whether the PROPERTY is deprecated. If the field is not deprecated or if that information is not known, it may be omitted. The next table offers more detail about the springConfigurationMetadataDeprecation attribute.
    */
   @Nullable
   @Setter
+  @Getter
   private SpringConfigurationMetadataDeprecation deprecation;
   /**
    * The default value, which is used if the PROPERTY is not specified. If the type of the PROPERTY is an ARRAY, it can be an ARRAY of value(s). If the default value is unknown, it may be omitted.
    */
   @Nullable
   @Setter
+  @Getter
   private Object defaultValue;
 
   /**
@@ -112,14 +116,15 @@ public class SpringConfigurationMetadataProperty
         SpringConfigurationMetadataHintValue valueHint =
             genericOrKeyHint.findHintValueWithName(pathSegment);
         if (valueHint != null) {
-          matchesRootTillParentNode.add(new HintAwareSuggestionNode(valueHint));
+          List<SuggestionNode> matchesRootTillHint = newListWithMembers(matchesRootTillParentNode,
+              new HintAwareSuggestionNode(valueHint));
           boolean lastPathSegment = pathSegmentStartIndex == pathSegments.length - 1;
           if (lastPathSegment) {
-            return matchesRootTillParentNode;
+            return matchesRootTillHint;
           } else {
             if (!isMapWithPredefinedValues()) {
               return doWithDelegateOrReturnNull(module, delegate -> delegate
-                  .findDeepestSuggestionNode(module, matchesRootTillParentNode, pathSegments,
+                  .findDeepestSuggestionNode(module, matchesRootTillHint, pathSegments,
                       pathSegmentStartIndex));
             }
           }
@@ -166,11 +171,11 @@ public class SpringConfigurationMetadataProperty
   @NotNull
   public Suggestion buildKeySuggestion(Module module, FileType fileType,
       List<SuggestionNode> matchesRootTillMe, int numOfAncestors) {
-    Suggestion.SuggestionBuilder builder = Suggestion.builder().suggestionToDisplay(
-        GenericUtil.dotDelimitedOriginalNames(matchesRootTillMe, numOfAncestors))
-        .description(description).shortType(shortenedType(className))
-        .defaultValue(getDefaultValueAsStr()).numOfAncestors(numOfAncestors)
-        .matchesTopFirst(matchesRootTillMe).icon(getSuggestionNodeType(module).getIcon());
+    Suggestion.SuggestionBuilder builder =
+        Suggestion.builder().description(description).lazyShortType(() -> shortenedType(className))
+            .lazyDefaultValue(this::getDefaultValueAsStr).numOfAncestors(numOfAncestors)
+            .matchesTopFirst(matchesRootTillMe)
+            .lazyIcon(() -> getSuggestionNodeType(module).getIcon());
     if (deprecation != null) {
       builder.deprecationLevel(deprecation.getLevel() != null ?
           deprecation.getLevel() :
@@ -289,6 +294,45 @@ public class SpringConfigurationMetadataProperty
     delegateCreationAttempted = true;
   }
 
+  /**
+   * Resolves the class delegate (if the type is a class) & lets it build its children, so that the first completion under this property is served from the cache
+   *
+   * @param module module to resolve the type against
+   */
+  public void warmUp(Module module) {
+    if (className != null && !isLeaf(module)) {
+      doWithDelegateOrReturnNull(module,
+          delegate -> delegate.findDirectChildrenForQueryPrefix(module, ""));
+    }
+  }
+
+  /**
+   * @return copy of the metadata as read from the metadata file. Hints & class delegate are module specific & hence are not carried over
+   */
+  public SpringConfigurationMetadataProperty copy() {
+    SpringConfigurationMetadataProperty copy = new SpringConfigurationMetadataProperty();
+    copy.name = name;
+    copy.className = className;
+    copy.description = description;
+    copy.sourceType = sourceType;
+    copy.deprecation = deprecation;
+    copy.defaultValue = defaultValue;
+    return copy;
+  }
+
+  /**
+   * @return copy of the metadata along with the hints attached to it & the class delegate that is already resolved (if any), so that the copy need not resolve it again
+   */
+  public SpringConfigurationMetadataProperty copyWithHints() {
+    SpringConfigurationMetadataProperty copy = copy();
+    copy.genericOrKeyHint = genericOrKeyHint;
+    copy.valueHint = valueHint;
+    copy.updateNodeType();
+    copy.delegate = delegate;
+    copy.delegateCreationAttempted = delegateCreationAttempted;
+    return copy;
+  }
+
   @Override
   public int compareTo(@NotNull SpringConfigurationMetadataProperty o) {
     return compare(this, o, comparing(thiz -> thiz.name));
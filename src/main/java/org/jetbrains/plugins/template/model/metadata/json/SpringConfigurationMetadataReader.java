@@ -0,0 +1,42 @@
+package org.jetbrains.plugins.template.model.metadata.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Binds `spring-configuration-metadata.json` into {@link SpringConfigurationMetadata}.
+ * Gson configuration is built once & shared, as it is thread safe
+ */
+@UtilityClass
+public class SpringConfigurationMetadataReader {
+
+  private static final Gson gson = new GsonBuilder()
+      // register custom mapper adapters
+      .registerTypeAdapter(SpringConfigurationMetadataValueProviderType.class,
+          new SpringConfigurationMetadataValueProviderTypeDeserializer())
+      .registerTypeAdapterFactory(new GsonPostProcessEnablingTypeFactory()).create();
+
+  /**
+   * @param reader source of the metadata json
+   * @return metadata as declared in the document
+   * @throws IOException if the document could not be read or is not a valid metadata file
+   */
+  public static SpringConfigurationMetadata read(Reader reader) throws IOException {
+    SpringConfigurationMetadata metadata;
+    try {
+      metadata = gson.fromJson(reader, SpringConfigurationMetadata.class);
+    } catch (JsonParseException e) {
+      throw new IOException("Invalid metadata json", e);
+    }
+    if (metadata == null) {
+      throw new IOException("Empty metadata json");
+    }
+    return metadata;
+  }
+
+}
@@ -0,0 +1,106 @@
+package org.jetbrains.plugins.template.model.suggestion;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Splits & sanitises dot delimited names char by char. Runs for every keystroke & every indexed key, so lets not go through regexes or create intermediate strings
+ */
+@UtilityClass
+public class PathSegments {
+
+  /**
+   * Sanitises a part of the name. Most of the names are already sanitised, in which case the name itself is returned instead of a copy
+   *
+   * @param name name to sanitise
+   * @param from start index (inclusive)
+   * @param to   end index (exclusive)
+   * @return trimmed, lower cased part of the name without `_` & `-`
+   */
+  public static String sanitise(String name, int from, int to) {
+    while (from < to && name.charAt(from) <= ' ') {
+      from++;
+    }
+    while (to > from && name.charAt(to - 1) <= ' ') {
+      to--;
+    }
+    int firstChangeAt = from;
+    while (firstChangeAt < to && isSanitised(name.charAt(firstChangeAt))) {
+      firstChangeAt++;
+    }
+    if (firstChangeAt == to) {
+      return from == 0 && to == name.length() ? name : name.substring(from, to);
+    }
+    char[] sanitised = new char[to - from];
+    name.getChars(from, firstChangeAt, sanitised, 0);
+    int length = firstChangeAt - from;
+    for (int i = firstChangeAt; i < to; i++) {
+      char c = name.charAt(i);
+      if (c != '_' && c != '-') {
+        sanitised[length++] = Character.toLowerCase(c);
+      }
+    }
+    return new String(sanitised, 0, length);
+  }
+
+  private static boolean isSanitised(char c) {
+    return c != '_' && c != '-' && Character.toLowerCase(c) == c;
+  }
+
+  /**
+   * @param name dot delimited name
+   * @return trimmed segments of the name. Empty segments are retained, i.e `a.` results in [`a`, ``]
+   */
+  public static String[] toRawPathSegments(String name) {
+    String[] segments = new String[numOfPathSegments(name)];
+    int segmentStart = 0;
+    for (int i = 0; i < segments.length; i++) {
+      int segmentEnd = i == segments.length - 1 ? name.length() : name.indexOf('.', segmentStart);
+      int from = segmentStart;
+      int to = segmentEnd;
+      while (from < to && name.charAt(from) <= ' ') {
+        from++;
+      }
+      while (to > from && name.charAt(to - 1) <= ' ') {
+        to--;
+      }
+      segments[i] = name.substring(from, to);
+      segmentStart = segmentEnd + 1;
+    }
+    return segments;
+  }
+
+  /**
+   * @param name dot delimited name
+   * @return sanitised segments of the name. Each segment is sanitised straight from the name
+   */
+  public static String[] toSanitisedPathSegments(String name) {
+    String[] segments = new String[numOfPathSegments(name)];
+    int segmentStart = 0;
+    for (int i = 0; i < segments.length; i++) {
+      int segmentEnd = i == segments.length - 1 ? name.length() : name.indexOf('.', segmentStart);
+      segments[i] = sanitise(name, segmentStart, segmentEnd);
+      segmentStart = segmentEnd + 1;
+    }
+    return segments;
+  }
+
+  /**
+   * @param name dot delimited name
+   * @return sanitised first segment of the name
+   */
+  public static String sanitisedFirstPathSegment(String name) {
+    int firstPeriodAt = name.indexOf('.');
+    return sanitise(name, 0, firstPeriodAt == -1 ? name.length() : firstPeriodAt);
+  }
+
+  private static int numOfPathSegments(String name) {
+    int numOfSegments = 1;
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) == '.') {
+        numOfSegments++;
+      }
+    }
+    return numOfSegments;
+  }
+
+}
@@ -17,13 +17,13 @@ import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMet
 import javax.annotation.Nullable;
 import javax.swing.*;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static com.intellij.openapi.util.text.StringUtil.shortenTextWithEllipsis;
 import static com.intellij.ui.JBColor.RED;
 import static com.intellij.ui.JBColor.YELLOW;
 
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.jetbrains.plugins.template.GenericUtil.dotDelimitedOriginalNames;
 import static org.jetbrains.plugins.template.GenericUtil.getFirstSentenceWithoutDot;
@@ -39,8 +39,9 @@ public class Suggestion implements Comparable<Suggestion> {
       new LookupElementRenderer<LookupElement>() {
         public void renderElement(LookupElement element, LookupElementPresentation presentation) {
           Suggestion suggestion = (Suggestion) element.getObject();
-          if (suggestion.icon != null) {
-            presentation.setIcon(suggestion.icon);
+          Icon icon = suggestion.getIcon();
+          if (icon != null) {
+            presentation.setIcon(icon);
           }
 
           presentation.setStrikeout(suggestion.deprecationLevel != null);
@@ -54,38 +55,63 @@ public class Suggestion implements Comparable<Suggestion> {
 
           String lookupString = element.getLookupString();
           presentation.setItemText(lookupString);
-          if (!lookupString.equals(suggestion.suggestionToDisplay)) {
+          if (!lookupString.equals(suggestion.getSuggestionToDisplay())) {
             presentation.setItemTextBold(true);
           }
 
           String shortDescription;
-          if (suggestion.defaultValue != null) {
-            shortDescription = shortenTextWithEllipsis(suggestion.defaultValue, 60, 0, true);
+          String defaultValue = suggestion.getDefaultValue();
+          if (defaultValue != null) {
+            shortDescription = shortenTextWithEllipsis(defaultValue, 60, 0, true);
             TextAttributes attrs =
                 EditorColorsManager.getInstance().getGlobalScheme().getAttributes(SCALAR_TEXT);
             presentation.setTailText("=" + shortDescription, attrs.getForegroundColor());
           }
 
-          if (suggestion.description != null) {
-            presentation
-                .appendTailText(" (" + getFirstSentenceWithoutDot(suggestion.description) + ")",
-                    true);
+          String description = suggestion.getDescription();
+          if (description != null) {
+            presentation.appendTailText(" (" + getFirstSentenceWithoutDot(description) + ")", true);
           }
 
-          if (suggestion.shortType != null) {
-            presentation.setTypeText(suggestion.shortType);
+          String shortType = suggestion.getShortType();
+          if (shortType != null) {
+            presentation.setTypeText(shortType);
           }
         }
       };
 
-  @NotNull
+  /**
+   * Computed from {@link #matchesTopFirst} when not specified explicitly
+   */
+  @Getter(AccessLevel.NONE)
+  @Nullable
   private String suggestionToDisplay;
+  /**
+   * Whether the text to display was specified explicitly, in which case it is a single segment. Cached text computed from the matches does not count
+   */
+  @Getter(AccessLevel.NONE)
+  private final boolean suggestionToDisplaySpecified;
+  /**
+   * Details that are only needed once the suggestion is rendered (or) documented can be computed lazily, as most of the matches of a search are never rendered. Each supplier is cleared once its value is computed
+   */
+  @Getter(AccessLevel.NONE)
   @Nullable
   private String description;
+  @Getter(AccessLevel.NONE)
+  @Nullable
+  private volatile Supplier<String> lazyDescription;
+  @Getter(AccessLevel.NONE)
   @Nullable
   private String shortType;
+  @Getter(AccessLevel.NONE)
+  @Nullable
+  private volatile Supplier<String> lazyShortType;
+  @Getter(AccessLevel.NONE)
   @Nullable
   private String defaultValue;
+  @Getter(AccessLevel.NONE)
+  @Nullable
+  private volatile Supplier<String> lazyDefaultValue;
   @Nullable
   private SpringConfigurationMetadataDeprecationLevel deprecationLevel;
   /**
@@ -116,21 +142,33 @@ public class Suggestion implements Comparable<Suggestion> {
    */
   @NotNull
   private FileType fileType;
+  @Getter(AccessLevel.NONE)
   @Nullable
   private Icon icon;
+  @Getter(AccessLevel.NONE)
+  @Nullable
+  private volatile Supplier<Icon> lazyIcon;
 
-  private String pathDotDelimitedRootToLeaf;
-
+  /**
+   * Details can either be specified as is (or) as suppliers (`lazy*`) if they are expensive to compute. Suppliers are run only when the lookup is rendered (or) documented
+   */
   @Builder
-  public Suggestion(@NotNull String suggestionToDisplay, @Nullable String description,
-                    @Nullable String shortType, @Nullable String defaultValue,
+  public Suggestion(@Nullable String suggestionToDisplay, @Nullable String description,
+                    @Nullable Supplier<String> lazyDescription, @Nullable String shortType,
+                    @Nullable Supplier<String> lazyShortType, @Nullable String defaultValue,
+                    @Nullable Supplier<String> lazyDefaultValue,
                     @Nullable SpringConfigurationMetadataDeprecationLevel deprecationLevel,
                     @NotNull List<? extends SuggestionNode> matchesTopFirst, int numOfAncestors, boolean forValue,
-                    boolean representingDefaultValue, @NotNull FileType fileType, @Nullable Icon icon) {
+                    boolean representingDefaultValue, @NotNull FileType fileType, @Nullable Icon icon,
+                    @Nullable Supplier<Icon> lazyIcon) {
     this.suggestionToDisplay = suggestionToDisplay;
+    this.suggestionToDisplaySpecified = suggestionToDisplay != null;
     this.description = description;
+    this.lazyDescription = lazyDescription;
     this.shortType = shortType;
+    this.lazyShortType = lazyShortType;
     this.defaultValue = defaultValue;
+    this.lazyDefaultValue = lazyDefaultValue;
     this.deprecationLevel = deprecationLevel;
     this.matchesTopFirst = matchesTopFirst;
     this.numOfAncestors = numOfAncestors;
@@ -138,13 +176,83 @@ public class Suggestion implements Comparable<Suggestion> {
     this.representingDefaultValue = representingDefaultValue;
     this.fileType = fileType;
     this.icon = icon;
-    this.pathDotDelimitedRootToLeaf =
-        matchesTopFirst.stream().map(SuggestionNode::getOriginalName).collect(joining("."));
+    this.lazyIcon = lazyIcon;
+  }
+
+  @NotNull
+  public String getSuggestionToDisplay() {
+    String suggestionToDisplay = this.suggestionToDisplay;
+    if (suggestionToDisplay == null) {
+      suggestionToDisplay = dotDelimitedOriginalNames(matchesTopFirst, numOfAncestors);
+      this.suggestionToDisplay = suggestionToDisplay;
+    }
+    return suggestionToDisplay;
+  }
+
+  /**
+   * @return number of segments of the text displayed, i.e {@link #getSegmentToDisplay(int)} can be called with `0` till one less than this
+   */
+  public int getNumOfSegmentsToDisplay() {
+    return suggestionToDisplaySpecified ? 1 : Math.max(0, matchesTopFirst.size() - numOfAncestors);
+  }
+
+  /**
+   * Lets the text displayed be looked at segment by segment without joining the segments (or) splitting the joined text
+   *
+   * @param index index of the segment
+   * @return original name of the segment, null if the node at the segment has no name (in which case the segment is not displayed)
+   */
+  @Nullable
+  public String getSegmentToDisplay(int index) {
+    return suggestionToDisplaySpecified ?
+        suggestionToDisplay :
+        matchesTopFirst.get(numOfAncestors + index).getOriginalName();
+  }
+
+  @Nullable
+  public String getDescription() {
+    Supplier<String> lazyDescription = this.lazyDescription;
+    if (lazyDescription != null) {
+      description = lazyDescription.get();
+      this.lazyDescription = null;
+    }
+    return description;
+  }
+
+  @Nullable
+  public String getShortType() {
+    Supplier<String> lazyShortType = this.lazyShortType;
+    if (lazyShortType != null) {
+      shortType = lazyShortType.get();
+      this.lazyShortType = null;
+    }
+    return shortType;
+  }
+
+  @Nullable
+  public String getDefaultValue() {
+    Supplier<String> lazyDefaultValue = this.lazyDefaultValue;
+    if (lazyDefaultValue != null) {
+      defaultValue = lazyDefaultValue.get();
+      this.lazyDefaultValue = null;
+    }
+    return defaultValue;
+  }
+
+  @Nullable
+  public Icon getIcon() {
+    Supplier<Icon> lazyIcon = this.lazyIcon;
+    if (lazyIcon != null) {
+      icon = lazyIcon.get();
+      this.lazyIcon = null;
+    }
+    return icon;
   }
 
   public LookupElementBuilder newLookupElement() {
-    LookupElementBuilder builder = LookupElementBuilder.create(this, suggestionToDisplay);
+    LookupElementBuilder builder = LookupElementBuilder.create(this, getSuggestionToDisplay());
     if (forValue) {
+      String description = getDescription();
       if (description != null) {
         builder = builder.withTypeText(description, true);
       }
@@ -171,22 +279,68 @@ public class Suggestion implements Comparable<Suggestion> {
     return matchesTopFirst.get(matchesTopFirst.size() - 1);
   }
 
+  /**
+   * Orders by the dot delimited path from root to leaf & then by the text displayed. Paths are compared char by char across the nodes, as if they were joined, without actually joining them
+   */
   @Override
   public int compareTo(@NotNull Suggestion other) {
-    int pathRootToLeafComparisonValue =
-        pathDotDelimitedRootToLeaf.compareTo(other.pathDotDelimitedRootToLeaf);
+    int pathRootToLeafComparisonValue = comparePaths(matchesTopFirst, other.matchesTopFirst);
     if (pathRootToLeafComparisonValue == 0) {
-      return suggestionToDisplay.compareTo(other.suggestionToDisplay);
+      return getSuggestionToDisplay().compareTo(other.getSuggestionToDisplay());
     }
     return pathRootToLeafComparisonValue;
   }
 
+  private static int comparePaths(List<? extends SuggestionNode> path,
+      List<? extends SuggestionNode> otherPath) {
+    int segment = 0;
+    int index = 0;
+    String name = originalNameAt(path, 0);
+    int otherSegment = 0;
+    int otherIndex = 0;
+    String otherName = originalNameAt(otherPath, 0);
+    while (true) {
+      int c = charAt(path, segment, name, index);
+      int otherC = charAt(otherPath, otherSegment, otherName, otherIndex);
+      if (c != otherC || c == -1) {
+        return c - otherC;
+      }
+      if (index < name.length()) {
+        index++;
+      } else {
+        name = originalNameAt(path, ++segment);
+        index = 0;
+      }
+      if (otherIndex < otherName.length()) {
+        otherIndex++;
+      } else {
+        otherName = originalNameAt(otherPath, ++otherSegment);
+        otherIndex = 0;
+      }
+    }
+  }
+
+  /**
+   * @return char at the index of the name of the segment. A period once the name ends & there are more segments, -1 after the last segment
+   */
+  private static int charAt(List<? extends SuggestionNode> path, int segment, String name,
+      int index) {
+    if (index < name.length()) {
+      return name.charAt(index);
+    }
+    return segment < path.size() - 1 ? '.' : -1;
+  }
+
+  private static String originalNameAt(List<? extends SuggestionNode> path, int segment) {
+    return segment < path.size() ? String.valueOf(path.get(segment).getOriginalName()) : "";
+  }
+
   @NotNull
   public List<? extends OriginalNameProvider> getMatchesForReplacement() {
     if (matchesTopFirst.size() > numOfAncestors) {
       return matchesTopFirst.stream().skip(numOfAncestors).collect(toList());
     } else { // can happen when user is trying to select as a child of array, in this case, the suggestion itself becomes the original name
-      return singletonList(() -> suggestionToDisplay);
+      return singletonList(this::getSuggestionToDisplay);
     }
   }
 
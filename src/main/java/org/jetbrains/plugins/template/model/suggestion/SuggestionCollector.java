@@ -0,0 +1,17 @@
+package org.jetbrains.plugins.template.model.suggestion;
+
+/**
+ * Receives the suggestions of a search as the tree is walked, so that the walk need not build a set of matches at every level of the tree
+ */
+public interface SuggestionCollector {
+
+  void collect(Suggestion suggestion);
+
+  /**
+   * @return true if no more suggestions are needed, in which case the walk stops early
+   */
+  default boolean isStopped() {
+    return false;
+  }
+
+}
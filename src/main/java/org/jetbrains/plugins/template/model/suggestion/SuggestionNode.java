@@ -11,7 +11,7 @@ public interface SuggestionNode
     extends OriginalNameProvider, DocumentationProvider, SuggestionNodeTypeProvider {
 
   static String sanitise(String name) {
-    return name.trim().replaceAll("_", "").replace("-", "").toLowerCase();
+    return PathSegments.sanitise(name, 0, name.length());
   }
 
   /**
@@ -60,6 +60,33 @@ public interface SuggestionNode
       List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
       int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude);
 
+  /**
+   * Same as {@link #findKeySuggestionsForQueryPrefix(Module, FileType, List, int, String[], int, Set)}, but hands over the matches to the collector as they are found
+   *
+   * @param module                       module
+   * @param fileType                     type of file requesting suggestion
+   * @param matchesRootTillMe            path from root till current node
+   * @param numOfAncestors               all ancestral keys dot delimited, required for showing full path in documentation
+   * @param querySegmentPrefixes         the search text parts split based on period delimiter
+   * @param querySegmentPrefixStartIndex current index in the `querySegmentPrefixes` to start search from
+   * @param siblingsToExclude            siblings to exclude from search
+   * @param collector                    collector of the matches
+   * @return true if the node matched the query, false otherwise (same as a null result from {@link #findKeySuggestionsForQueryPrefix(Module, FileType, List, int, String[], int, Set)})
+   */
+  default boolean collectKeySuggestionsForQueryPrefix(Module module, FileType fileType,
+      List<SuggestionNode> matchesRootTillMe, int numOfAncestors, String[] querySegmentPrefixes,
+      int querySegmentPrefixStartIndex, @Nullable Set<String> siblingsToExclude,
+      SuggestionCollector collector) {
+    SortedSet<Suggestion> suggestions =
+        findKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillMe, numOfAncestors,
+            querySegmentPrefixes, querySegmentPrefixStartIndex, siblingsToExclude);
+    if (suggestions == null) {
+      return false;
+    }
+    suggestions.forEach(collector::collect);
+    return true;
+  }
+
   @Nullable
   String getNameForDocumentation(Module module);
 
@@ -0,0 +1,112 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.Key;
+import lombok.Getter;
+import org.jetbrains.plugins.template.model.suggestion.FileType;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Remembers the last search made from an editor. Nodes resolved for the ancestral keys are reused as long as the completion happens under the same keys.
+ * Successive keystrokes mostly extend the last segment of the query. A node that did not match a query cannot match such an extension of it either, so for queries that are not under any key, the search of the next keystroke is resumed from the nodes that matched (instead of all the roots/segment index), which gives the same results as a fresh search.
+ * Under a key, only the ancestral matches are reused & the walk below the deepest of them is run afresh on every keystroke. That walk searches a level deeper only when none of the children at a level match, so an extended query can bring back whole subtrees the earlier walk never visited & there is no set of nodes it could be resumed from.
+ * Sessions are kept in the user data of the editor & are immutable, a new session replaces the earlier one after every search
+ */
+@Getter
+class CompletionSession {
+
+  private static final Key<CompletionSession> KEY = Key.create("spring.assistant.completion.session");
+
+  private final String moduleName;
+  /**
+   * Index the session was built from. Session is not valid anymore once the module is reindexed, which {@link #find} tells by the identity of the index. A stale session (& the index it refers to) is let go once the editor is closed (or) is replaced by the next search from the editor
+   */
+  private final ModuleSearchIndex searchIndex;
+  private final FileType fileType;
+  @Nullable
+  private final List<String> ancestralKeys;
+  @Nullable
+  private final Set<String> siblingsToExclude;
+  /**
+   * Nodes matching the ancestral keys, root first. Null if the completion is not under any key
+   */
+  @Nullable
+  private final List<SuggestionNode> matchesRootToDeepest;
+  /**
+   * Sanitised query segments the search was made for
+   */
+  private final String[] querySegmentPrefixes;
+  /**
+   * Paths from the root to the nodes the search of a query that is not under any key can be resumed from, in the order they were searched. Null if the completion is under a key
+   */
+  @Nullable
+  private final List<List<SuggestionNode>> pathsToResumeFrom;
+  /**
+   * True if {@link #pathsToResumeFrom} lead to nodes below the roots, picked from the segment index. False if they are roots
+   */
+  private final boolean belowRoots;
+
+  CompletionSession(String moduleName, ModuleSearchIndex searchIndex, FileType fileType,
+      @Nullable List<String> ancestralKeys, @Nullable Set<String> siblingsToExclude,
+      @Nullable List<SuggestionNode> matchesRootToDeepest, String[] querySegmentPrefixes,
+      @Nullable List<List<SuggestionNode>> pathsToResumeFrom, boolean belowRoots) {
+    this.moduleName = moduleName;
+    this.searchIndex = searchIndex;
+    this.fileType = fileType;
+    this.ancestralKeys = ancestralKeys;
+    this.siblingsToExclude = siblingsToExclude;
+    this.matchesRootToDeepest = matchesRootToDeepest;
+    this.querySegmentPrefixes = querySegmentPrefixes;
+    this.pathsToResumeFrom = pathsToResumeFrom;
+    this.belowRoots = belowRoots;
+  }
+
+  /**
+   * @return session of the editor, if it was created for the same search context. Null otherwise
+   */
+  @Nullable
+  static CompletionSession find(Editor editor, String moduleName, ModuleSearchIndex searchIndex,
+      FileType fileType, @Nullable List<String> ancestralKeys,
+      @Nullable Set<String> siblingsToExclude) {
+    CompletionSession session = editor.getUserData(KEY);
+    if (session != null && session.moduleName.equals(moduleName)
+        && session.searchIndex == searchIndex && session.fileType == fileType && Objects
+        .equals(session.ancestralKeys, ancestralKeys) && Objects
+        .equals(session.siblingsToExclude, siblingsToExclude)) {
+      return session;
+    }
+    return null;
+  }
+
+  void attachTo(Editor editor) {
+    editor.putUserData(KEY, this);
+  }
+
+  /**
+   * Resuming is limited to the cases where the last segment is extended. Once a segment is completed (by typing a period), search moves a level down the tree & has to start afresh
+   *
+   * @param newQuerySegmentPrefixes sanitised query segments
+   * @return true if the search for the new query can be resumed from {@link #pathsToResumeFrom}
+   */
+  boolean canResumeFor(String[] newQuerySegmentPrefixes) {
+    if (pathsToResumeFrom == null) {
+      return false;
+    }
+    int lastIndex = querySegmentPrefixes.length - 1;
+    if (newQuerySegmentPrefixes.length != querySegmentPrefixes.length) {
+      return false;
+    }
+    for (int i = 0; i < lastIndex; i++) {
+      if (!newQuerySegmentPrefixes[i].equals(querySegmentPrefixes[i])) {
+        return false;
+      }
+    }
+    return newQuerySegmentPrefixes[lastIndex].startsWith(querySegmentPrefixes[lastIndex]);
+  }
+
+}
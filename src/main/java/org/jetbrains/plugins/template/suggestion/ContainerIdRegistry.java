@@ -0,0 +1,47 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Hands out small integer ids for metadata containers of the project, so that the nodes of the metadata tree can record the containers they belong to as bits of a {@link BitSet} instead of holding sets of container urls.
+ * Ids are never reused within a project, so that a container keeps its id across reindexes & across the modules (& library layers) it is part of
+ */
+class ContainerIdRegistry {
+
+  private final Map<String, Integer> containerRefToId = new ConcurrentHashMap<>();
+  private final List<String> idToContainerRef = new ArrayList<>();
+
+  /**
+   * @param containerArchiveOrFileRef container reference
+   * @return id of the container, assigned on first request
+   */
+  int idOf(String containerArchiveOrFileRef) {
+    Integer id = containerRefToId.get(containerArchiveOrFileRef);
+    if (id != null) {
+      return id;
+    }
+    synchronized (idToContainerRef) {
+      return containerRefToId.computeIfAbsent(containerArchiveOrFileRef, containerRef -> {
+        idToContainerRef.add(containerRef);
+        return idToContainerRef.size() - 1;
+      });
+    }
+  }
+
+  /**
+   * @param containerIds ids of the containers
+   * @return comma separated references of the containers. Useful for logging
+   */
+  String describe(BitSet containerIds) {
+    synchronized (idToContainerRef) {
+      return containerIds.stream().mapToObj(idToContainerRef::get).collect(joining(","));
+    }
+  }
+
+}
@@ -0,0 +1,89 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import gnu.trove.THashMap;
+import org.apache.commons.collections4.Trie;
+import org.jetbrains.plugins.template.model.metadata.ChildIndex;
+import org.jetbrains.plugins.template.model.metadata.MetadataNonPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Reverse index from a container to the nodes of a search tree the container contributed groups/properties to, so that a container can be removed from the tree by visiting just those nodes (& their ancestors) instead of the whole tree.
+ * Nodes are addressed by their sanitised path rather than by reference, so that the index stays valid for the new versions of a library layer, which copy the nodes along the paths they modify
+ */
+class ContainerNodeIndex {
+
+  private final Map<Integer, List<String[]>> containerIdToNodePaths;
+
+  ContainerNodeIndex() {
+    containerIdToNodePaths = new THashMap<>();
+  }
+
+  /**
+   * Paths of the base index are shared with the copy. This is safe, as a container is always removed before its nodes are added again
+   *
+   * @param base index to copy
+   */
+  ContainerNodeIndex(ContainerNodeIndex base) {
+    containerIdToNodePaths = new THashMap<>(base.containerIdToNodePaths);
+  }
+
+  /**
+   * @param containerId  id of the container
+   * @param pathSegments sanitised path of the group/property node the container contributed
+   */
+  void add(int containerId, String[] pathSegments) {
+    containerIdToNodePaths.computeIfAbsent(containerId, id -> new ArrayList<>()).add(pathSegments);
+  }
+
+  /**
+   * @param containerId id of the container
+   * @return sanitised paths of the group/property nodes the container contributed
+   */
+  List<String[]> getNodePaths(int containerId) {
+    List<String[]> nodePaths = containerIdToNodePaths.get(containerId);
+    return nodePaths != null ? nodePaths : emptyList();
+  }
+
+  /**
+   * Removes the container from all the nodes it contributed & prunes the branches that are left with neither an owner nor a child
+   *
+   * @param roots       roots of the tree, keyed by sanitised name
+   * @param containerId id of the container to remove
+   */
+  void remove(Trie<String, MetadataSuggestionNode> roots, int containerId) {
+    List<String[]> nodePaths = containerIdToNodePaths.remove(containerId);
+    if (nodePaths == null) {
+      return;
+    }
+    for (String[] pathSegments : nodePaths) {
+      MetadataSuggestionNode node = findNode(roots, pathSegments);
+      // node might already be pruned while removing an earlier path
+      if (node != null && node.removeRefCascadeTillRoot(containerId)) {
+        roots.remove(pathSegments[0]);
+      }
+    }
+  }
+
+  @Nullable
+  private static MetadataSuggestionNode findNode(Trie<String, MetadataSuggestionNode> roots,
+      String[] pathSegments) {
+    MetadataSuggestionNode node = roots.get(pathSegments[0]);
+    for (int i = 1; i < pathSegments.length && node != null; i++) {
+      if (node.isProperty()) {
+        return null;
+      }
+      ChildIndex<MetadataSuggestionNode> children =
+          MetadataNonPropertySuggestionNode.class.cast(node).getChildren();
+      node = children != null ? children.get(pathSegments[i]) : null;
+    }
+    return node;
+  }
+
+}
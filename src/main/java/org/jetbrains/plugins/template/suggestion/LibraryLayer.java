@@ -0,0 +1,81 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import gnu.trove.THashMap;
+import lombok.Getter;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.collections4.TrieUtils.unmodifiableTrie;
+
+/**
+ * Search tree built from the metadata of library archives alone. Modules of a project mostly share the same set of libraries (`.main`/`.test` source sets of gradle, sibling maven modules, e.t.c). So, all modules whose libraries have the same fingerprint share a single instance of this layer, while metadata generated by the module itself is kept in a small per module overlay.
+ * Once built, a layer is never modified. A layer derived from another one (for a module that gained a dependency, for eg) copies only the nodes along the paths of the containers it removes/adds & shares rest of the tree with the layer it is derived from
+ */
+@Getter
+class LibraryLayer {
+
+  static final LibraryLayer EMPTY =
+      new LibraryLayer("", new PatriciaTrie<>(), new ContainerNodeIndex(), new THashMap<>());
+
+  /**
+   * Identifies the exact set of library containers (along with their versions) this layer is built from
+   */
+  private final String fingerprint;
+  /**
+   * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens, underscores, e.t.c in the keys themselves
+   */
+  private final Trie<String, MetadataSuggestionNode> roots;
+  /**
+   * Nodes of the tree contributed by each of the containers. Used for removing containers from the tree of a new layer, when deriving it from this one
+   */
+  private final ContainerNodeIndex containerNodeIndex;
+  /**
+   * Containers that made it into the layer. Containers whose metadata could not be processed are left out
+   */
+  private final Map<String, MetadataContainerInfo> containerPathToContainerInfo;
+  @Nullable
+  private volatile SegmentIndex segmentIndex;
+
+  LibraryLayer(String fingerprint, Trie<String, MetadataSuggestionNode> roots,
+      ContainerNodeIndex containerNodeIndex,
+      Map<String, MetadataContainerInfo> containerPathToContainerInfo) {
+    this.fingerprint = fingerprint;
+    this.roots = unmodifiableTrie(roots);
+    this.containerNodeIndex = containerNodeIndex;
+    this.containerPathToContainerInfo = unmodifiableMap(containerPathToContainerInfo);
+  }
+
+  /**
+   * @param libraryContainers library containers with metadata files, sorted by container reference
+   * @return fingerprint of the containers
+   */
+  static String fingerprintOf(List<MetadataContainerInfo> libraryContainers) {
+    StringBuilder builder = new StringBuilder();
+    for (MetadataContainerInfo containerInfo : libraryContainers) {
+      builder.append(containerInfo.getContainerArchiveOrFileRef()).append('#')
+          .append(containerInfo.getMarker()).append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @return index of the nodes below the roots. Built on first use, as it is needed only when a query does not match any of the roots
+   */
+  SegmentIndex getSegmentIndex() {
+    SegmentIndex index = segmentIndex;
+    if (index == null) {
+      // racing threads might end up building the index more than once, which is harmless as the layer is never modified
+      index = new SegmentIndex(roots);
+      segmentIndex = index;
+    }
+    return index;
+  }
+
+}
@@ -0,0 +1,17 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.codeInsight.lookup.LookupElement;
+
+/**
+ * Receives suggestions as & when they are found, so that they can be shown before the search completes
+ */
+public interface LookupElementConsumer {
+
+  void consume(LookupElement lookupElement);
+
+  /**
+   * @return true if the consumer is not interested in any more elements (the popup is closed, for eg), in which case the search stops early
+   */
+  boolean isStopped();
+
+}
@@ -0,0 +1,351 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.intellij.openapi.fileTypes.FileTypes.ARCHIVE;
+import static java.util.Arrays.asList;
+import static org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo.ADDITIONAL_SPRING_CONFIGURATION_METADATA_JSON;
+import static org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo.SPRING_CONFIGURATION_METADATA_JSON;
+
+/**
+ * Keeps track of metadata files, archives & directories that changed on disk since each module was last indexed, along with the classpath roots of each module.
+ * This allows reindexing of a module to look at only the classpath roots that could have changed, instead of probing all roots of the classpath on every trigger.
+ * <p>
+ * A module is scanned completely when it is indexed for the first time, when classpath of the project changes (or) when too many changes piled up since the module was last indexed
+ */
+class MetadataChangeTracker implements BulkFileListener, ModuleRootListener {
+
+  private static final Logger log = Logger.getInstance(MetadataChangeTracker.class);
+
+  /**
+   * Beyond this, we stop tracking individual changes & let the modules be scanned completely
+   */
+  private static final int MAX_PENDING_CHANGES = 10_000;
+  private static final String META_INF_DIRECTORY = "META-INF";
+
+  private final Object lock = new Object();
+  /**
+   * Urls of the files that changed, in the order in which the changes are seen
+   */
+  private final List<String> changedUrls = new ArrayList<>();
+  /**
+   * Number of changes that are no longer held in {@link #changedUrls}. Sequence of a change is its index in {@link #changedUrls} + this value
+   */
+  private long numOfDroppedChanges;
+  private final Map<String, ModuleState> moduleNameToState = new THashMap<>();
+  /**
+   * Urls of the classpath roots of all the modules scanned since the roots last changed. Lets directory changes that have nothing to do with the classpath (a new package under the sources, for eg) be ignored
+   */
+  private final Set<String> knownRootUrls = new THashSet<>();
+  /**
+   * Bumped whenever classpath roots of the project change, so that scans that started with the older roots are not remembered
+   */
+  private long rootsGeneration;
+
+  void subscribe(Project project) {
+    MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, this);
+  }
+
+  @Override
+  public void after(@NotNull List<? extends VFileEvent> events) {
+    List<String> relevantUrls = null;
+    for (VFileEvent event : events) {
+      if (isRelevant(event)) {
+        if (relevantUrls == null) {
+          relevantUrls = new ArrayList<>();
+        }
+        String protocol = event.getFileSystem().getProtocol();
+        relevantUrls.add(VirtualFileManager.constructUrl(protocol, event.getPath()));
+        String oldPath = getOldPath(event);
+        if (oldPath != null) {
+          relevantUrls.add(VirtualFileManager.constructUrl(protocol, oldPath));
+        }
+      }
+    }
+
+    if (relevantUrls != null) {
+      List<String> finalRelevantUrls = relevantUrls;
+      debug(() -> log.debug("Metadata containers changed " + finalRelevantUrls));
+      synchronized (lock) {
+        changedUrls.addAll(relevantUrls);
+        if (changedUrls.size() > MAX_PENDING_CHANGES) {
+          numOfDroppedChanges += changedUrls.size();
+          changedUrls.clear();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void rootsChanged(@NotNull ModuleRootEvent event) {
+    debug(() -> log.debug("Project roots changed, all modules will be scanned completely"));
+    synchronized (lock) {
+      moduleNameToState.clear();
+      knownRootUrls.clear();
+      rootsGeneration++;
+      numOfDroppedChanges += changedUrls.size();
+      changedUrls.clear();
+    }
+  }
+
+  /**
+   * Must be called from within a read action
+   *
+   * @param module module about to be indexed
+   * @return classpath roots of the module that need to be scanned for changes
+   */
+  ContainerScan beginScan(Module module) {
+    ModuleState state;
+    List<String> changedUrlsSinceLastScan = null;
+    long scannedTill;
+    long generation;
+    synchronized (lock) {
+      generation = rootsGeneration;
+      scannedTill = numOfDroppedChanges + changedUrls.size();
+      state = moduleNameToState.get(module.getName());
+      if (state != null && state.scannedTill >= numOfDroppedChanges) {
+        changedUrlsSinceLastScan = new ArrayList<>(changedUrls
+            .subList((int) (state.scannedTill - numOfDroppedChanges), changedUrls.size()));
+      }
+    }
+
+    if (state == null) {
+      VirtualFile[] roots = OrderEnumerator.orderEntries(module).recursively().classes().getRoots();
+      // file changes happen within write actions, so none of them can be missed between enumerating the roots & remembering them
+      synchronized (lock) {
+        if (generation == rootsGeneration) {
+          for (VirtualFile root : roots) {
+            knownRootUrls.add(MetadataContainerInfo.getContainerUrl(root));
+          }
+        }
+      }
+      return new ContainerScan(roots, null, scannedTill, generation);
+    }
+
+    if (changedUrlsSinceLastScan == null) {
+      return new ContainerScan(state.roots, null, scannedTill, generation);
+    }
+
+    List<VirtualFile> rootsToScan = new ArrayList<>();
+    for (int i = 0; i < state.roots.length; i++) {
+      String rootUrl = state.rootUrls[i];
+      if (changedUrlsSinceLastScan.stream().anyMatch(
+          changedUrl -> isSameOrAncestor(rootUrl, changedUrl) || isSameOrAncestor(changedUrl,
+              rootUrl))) {
+        rootsToScan.add(state.roots[i]);
+      }
+    }
+    return new ContainerScan(state.roots, rootsToScan, scannedTill, generation);
+  }
+
+  /**
+   * Marks all the changes seen by the given scan as processed for the module
+   *
+   * @param module module that was indexed
+   * @param scan   scan that was used to index the module
+   */
+  void scanCompleted(Module module, ContainerScan scan) {
+    synchronized (lock) {
+      if (scan.rootsGeneration != rootsGeneration) {
+        // roots changed while the module was being scanned, next scan would be a full one anyway
+        return;
+      }
+      ModuleState state = moduleNameToState.get(module.getName());
+      if (state == null) {
+        if (scan.isFullScan()) {
+          moduleNameToState.put(module.getName(), new ModuleState(scan.allRoots, scan.scannedTill));
+        }
+      } else {
+        state.scannedTill = Math.max(state.scannedTill, scan.scannedTill);
+      }
+
+      // lets drop changes that are already seen by all modules
+      long seenByAll = moduleNameToState.values().stream().mapToLong(s -> s.scannedTill).min()
+          .orElse(numOfDroppedChanges + changedUrls.size());
+      int numOfChangesToDrop = (int) Math.min(seenByAll - numOfDroppedChanges, changedUrls.size());
+      if (numOfChangesToDrop > 0) {
+        changedUrls.subList(0, numOfChangesToDrop).clear();
+        numOfDroppedChanges += numOfChangesToDrop;
+      }
+    }
+  }
+
+  /**
+   * @return true if the event could change the metadata of any of the classpath roots
+   */
+  private boolean isRelevant(VFileEvent event) {
+    String name = event.getPath().substring(event.getPath().lastIndexOf('/') + 1);
+    if (name.equals(SPRING_CONFIGURATION_METADATA_JSON) || name
+        .equals(ADDITIONAL_SPRING_CONFIGURATION_METADATA_JSON)) {
+      return true;
+    }
+    if (!(event.getFileSystem() instanceof LocalFileSystem)) {
+      return false;
+    }
+    if (FileTypeRegistry.getInstance().getFileTypeByFileName(name) == ARCHIVE) {
+      return true;
+    }
+    if (!isDirectory(event)) {
+      return false;
+    }
+    // a directory that (might) contain metadata files (or) a classpath root (an output directory, for eg) is created/deleted/moved
+    if (name.equals(META_INF_DIRECTORY)) {
+      return true;
+    }
+    String protocol = event.getFileSystem().getProtocol();
+    String url = VirtualFileManager.constructUrl(protocol, event.getPath());
+    String oldPath = getOldPath(event);
+    String oldUrl = oldPath != null ? VirtualFileManager.constructUrl(protocol, oldPath) : null;
+    synchronized (lock) {
+      for (String rootUrl : knownRootUrls) {
+        if (isSameOrAncestor(url, rootUrl) || (oldUrl != null && isSameOrAncestor(oldUrl,
+            rootUrl))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return path of the file before it was moved/renamed, null if the file was neither
+   */
+  @Nullable
+  private static String getOldPath(VFileEvent event) {
+    if (event instanceof VFileMoveEvent) {
+      return ((VFileMoveEvent) event).getOldPath();
+    } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event)
+        .isRename()) {
+      return ((VFilePropertyChangeEvent) event).getOldPath();
+    }
+    return null;
+  }
+
+  private static boolean isDirectory(VFileEvent event) {
+    VirtualFile file = event.getFile();
+    if (file != null) {
+      return file.isDirectory();
+    }
+    return event instanceof VFileCreateEvent && ((VFileCreateEvent) event).isDirectory();
+  }
+
+  private static boolean isSameOrAncestor(String ancestorUrl, String url) {
+    return url.equals(ancestorUrl) || (url.startsWith(ancestorUrl) && url
+        .startsWith("/", ancestorUrl.length()));
+  }
+
+  /**
+   * Debug logging can be enabled by adding fully classified class name/package name with # prefix
+   *
+   * @param doWhenDebug code to execute when debug is enabled
+   */
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+  private static class ModuleState {
+    private final VirtualFile[] roots;
+    /**
+     * Urls of the files/archives that correspond to {@link #roots}, in the same order
+     */
+    private final String[] rootUrls;
+    private long scannedTill;
+
+    ModuleState(VirtualFile[] roots, long scannedTill) {
+      this.roots = roots;
+      this.rootUrls = new String[roots.length];
+      for (int i = 0; i < roots.length; i++) {
+        rootUrls[i] = MetadataContainerInfo.getContainerUrl(roots[i]);
+      }
+      this.scannedTill = scannedTill;
+    }
+  }
+
+
+  static class ContainerScan {
+    private final VirtualFile[] allRoots;
+    /**
+     * Null if all roots need to be scanned
+     */
+    @Nullable
+    private final List<VirtualFile> rootsToScan;
+    @Nullable
+    private final String[] rootUrlsToScan;
+    private final long scannedTill;
+    private final long rootsGeneration;
+
+    ContainerScan(VirtualFile[] allRoots, @Nullable List<VirtualFile> rootsToScan,
+        long scannedTill, long rootsGeneration) {
+      this.allRoots = allRoots;
+      this.rootsToScan = rootsToScan;
+      this.rootUrlsToScan = rootsToScan != null ?
+          rootsToScan.stream().map(MetadataContainerInfo::getContainerUrl).toArray(String[]::new) :
+          null;
+      this.scannedTill = scannedTill;
+      this.rootsGeneration = rootsGeneration;
+    }
+
+    boolean isFullScan() {
+      return rootsToScan == null;
+    }
+
+    /**
+     * @return true if nothing has changed for the module since it was last scanned
+     */
+    boolean isUpToDate() {
+      return rootsToScan != null && rootsToScan.isEmpty();
+    }
+
+    Collection<VirtualFile> getRootsToScan() {
+      return rootsToScan != null ? rootsToScan : asList(allRoots);
+    }
+
+    /**
+     * @param containerArchiveOrFileRef container reference
+     * @return true if the container (if it still exists) would be found by this scan
+     */
+    boolean covers(String containerArchiveOrFileRef) {
+      if (rootUrlsToScan == null) {
+        return true;
+      }
+      for (String rootUrl : rootUrlsToScan) {
+        if (isSameOrAncestor(rootUrl, containerArchiveOrFileRef)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,528 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadata;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataDeprecation;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataDeprecationLevel;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataGroup;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataHint;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataHintValue;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataValueProvider;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataValueProviderParams;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataValueProviderType;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Persists parsed metadata of all containers along with the module -> container mapping to the IDE system directory, so that the index can be rebuilt on project open without having to parse any of the metadata files again.
+ * <p>
+ * Snapshot entries are validated against the timestamp & length of the container (archive/metadata file) on load, as the VFS markers held by {@link MetadataContainerInfo} are not stable across sessions
+ */
+class MetadataIndexSnapshot {
+
+  private static final Logger log = Logger.getInstance(MetadataIndexSnapshot.class);
+
+  /**
+   * Needs to be bumped whenever the layout of the snapshot changes
+   */
+  private static final int VERSION = 2;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte NUMBER = 2;
+  private static final byte BOOLEAN = 3;
+  private static final byte LIST = 4;
+  private static final byte MAP = 5;
+
+  private final Path snapshotPath;
+
+  MetadataIndexSnapshot(Project project) {
+    snapshotPath = Paths.get(PathManager.getSystemPath(), "spring-assistant",
+        project.getLocationHash() + ".idx");
+  }
+
+  /**
+   * Loads the snapshot & primes the cache with metadata of all containers that did not change since the snapshot was taken
+   *
+   * @param metadataCache cache to prime
+   * @return module name -> containers (with metadata files) of the module that are still valid. Empty if there is no usable snapshot
+   */
+  Map<String, List<MetadataContainerInfo>> load(SpringConfigurationMetadataCache metadataCache) {
+    Map<String, List<MetadataContainerInfo>> moduleNameToContainers = new THashMap<>();
+    if (!Files.exists(snapshotPath)) {
+      return moduleNameToContainers;
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+      if (in.readInt() != VERSION) {
+        debug(() -> log.debug("Ignoring snapshot written in an older format " + snapshotPath));
+        return moduleNameToContainers;
+      }
+
+      Map<String, MetadataContainerInfo> containerRefToContainerInfo = new THashMap<>();
+      while (in.readBoolean()) {
+        String containerRef = IOUtil.readUTF(in);
+        String fileUrl = IOUtil.readUTF(in);
+        boolean archive = in.readBoolean();
+        long timeStamp = in.readLong();
+        long length = in.readLong();
+        SpringConfigurationMetadata metadata = readMetadata(in);
+
+        VirtualFile container = VirtualFileManager.getInstance().findFileByUrl(containerRef);
+        if (container != null && container.getTimeStamp() == timeStamp
+            && container.getLength() == length) {
+          MetadataContainerInfo containerInfo =
+              MetadataContainerInfo.restore(containerRef, fileUrl, archive);
+          if (containerInfo != null) {
+            metadataCache.prime(containerInfo, metadata);
+            containerRefToContainerInfo.put(containerRef, containerInfo);
+          }
+        } else {
+          debug(() -> log.debug("Container changed since the snapshot was taken " + containerRef));
+        }
+      }
+
+      int numOfModules = DataInputOutputUtil.readINT(in);
+      for (int i = 0; i < numOfModules; i++) {
+        String moduleName = IOUtil.readUTF(in);
+        int numOfModuleContainers = DataInputOutputUtil.readINT(in);
+        List<MetadataContainerInfo> moduleContainers = new ArrayList<>(numOfModuleContainers);
+        for (int j = 0; j < numOfModuleContainers; j++) {
+          MetadataContainerInfo containerInfo = containerRefToContainerInfo.get(IOUtil.readUTF(in));
+          if (containerInfo != null) {
+            moduleContainers.add(containerInfo);
+          }
+        }
+        moduleNameToContainers.put(moduleName, moduleContainers);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.warn("Discarding unreadable index snapshot " + snapshotPath, e);
+      moduleNameToContainers.clear();
+      delete();
+    }
+    return moduleNameToContainers;
+  }
+
+  /**
+   * Writes snapshot of metadata of all containers that are seen by modules. Metadata that is no longer held by the cache is carried over from the current snapshot, as long as the container did not change since
+   *
+   * @param moduleNameToSeenContainerPathToContainerInfo containers seen by each of the modules
+   * @param metadataCache                                cache holding parsed metadata
+   * @return true if the snapshot got written, false otherwise
+   */
+  boolean save(
+      Map<String, Map<String, MetadataContainerInfo>> moduleNameToSeenContainerPathToContainerInfo,
+      SpringConfigurationMetadataCache metadataCache) {
+    Map<String, MetadataContainerInfo> containerRefToContainerInfo = new LinkedHashMap<>();
+    Map<String, VirtualFile> containerRefToContainer = new THashMap<>();
+    Map<String, List<String>> moduleNameToContainerRefs = new LinkedHashMap<>();
+    moduleNameToSeenContainerPathToContainerInfo.forEach((moduleName, seenContainers) -> {
+      List<String> containerRefs = new ArrayList<>();
+      for (MetadataContainerInfo containerInfo : new ArrayList<>(seenContainers.values())) {
+        String containerRef = containerInfo.getContainerArchiveOrFileRef();
+        if (!containerRefToContainerInfo.containsKey(containerRef)) {
+          if (!containerInfo.containsMetadataFile()) {
+            continue;
+          }
+          VirtualFile container = VirtualFileManager.getInstance().findFileByUrl(containerRef);
+          if (container == null) {
+            continue;
+          }
+          containerRefToContainerInfo.put(containerRef, containerInfo);
+          containerRefToContainer.put(containerRef, container);
+        }
+        containerRefs.add(containerRef);
+      }
+      moduleNameToContainerRefs.put(moduleName, containerRefs);
+    });
+
+    Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(snapshotPath.getParent());
+      Set<String> writtenContainerRefs = new THashSet<>();
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+        out.writeInt(VERSION);
+
+        for (MetadataContainerInfo containerInfo : containerRefToContainerInfo.values()) {
+          String containerRef = containerInfo.getContainerArchiveOrFileRef();
+          SpringConfigurationMetadata metadata = metadataCache.peek(containerRef);
+          if (metadata != null) {
+            VirtualFile container = containerRefToContainer.get(containerRef);
+            assert containerInfo.getFileUrl() != null;
+            writeContainer(out, containerRef, containerInfo.getFileUrl(),
+                containerInfo.isArchive(), container.getTimeStamp(), container.getLength(),
+                metadata);
+            writtenContainerRefs.add(containerRef);
+          }
+        }
+        carryOverContainers(out, containerRefToContainer, writtenContainerRefs);
+        out.writeBoolean(false);
+
+        DataInputOutputUtil.writeINT(out, moduleNameToContainerRefs.size());
+        for (Map.Entry<String, List<String>> moduleEntry : moduleNameToContainerRefs.entrySet()) {
+          // containers that could not be written are left out, so that they get indexed afresh on restore
+          List<String> containerRefs = moduleEntry.getValue().stream()
+              .filter(writtenContainerRefs::contains).collect(toList());
+          IOUtil.writeUTF(out, moduleEntry.getKey());
+          DataInputOutputUtil.writeINT(out, containerRefs.size());
+          for (String containerRef : containerRefs) {
+            IOUtil.writeUTF(out, containerRef);
+          }
+        }
+      }
+      Files.move(tempPath, snapshotPath, REPLACE_EXISTING, ATOMIC_MOVE);
+      debug(() -> log.debug("Index snapshot written to " + snapshotPath));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      log.warn("Could not write index snapshot to " + snapshotPath, e);
+      delete();
+      return false;
+    }
+  }
+
+  /**
+   * Copies entries of the current snapshot for containers whose metadata is no longer held by the cache, one entry at a time, so that none of the metadata needs to be parsed again
+   *
+   * @param out                     snapshot being written
+   * @param containerRefToContainer containers that need to be part of the snapshot
+   * @param writtenContainerRefs    containers already written, updated with the ones carried over
+   * @throws IOException if the current snapshot could not be read (or) the entries could not be written. Snapshot is discarded by the caller & hence the next save starts afresh
+   */
+  private void carryOverContainers(DataOutput out, Map<String, VirtualFile> containerRefToContainer,
+      Set<String> writtenContainerRefs) throws IOException {
+    if (writtenContainerRefs.size() == containerRefToContainer.size() || !Files
+        .exists(snapshotPath)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+      if (in.readInt() != VERSION) {
+        return;
+      }
+      while (in.readBoolean()) {
+        String containerRef = IOUtil.readUTF(in);
+        String fileUrl = IOUtil.readUTF(in);
+        boolean archive = in.readBoolean();
+        long timeStamp = in.readLong();
+        long length = in.readLong();
+        SpringConfigurationMetadata metadata = readMetadata(in);
+
+        VirtualFile container = containerRefToContainer.get(containerRef);
+        if (container != null && !writtenContainerRefs.contains(containerRef)
+            && container.getTimeStamp() == timeStamp && container.getLength() == length) {
+          writeContainer(out, containerRef, fileUrl, archive, timeStamp, length, metadata);
+          writtenContainerRefs.add(containerRef);
+        }
+      }
+    }
+  }
+
+  private static void writeContainer(DataOutput out, String containerRef, String fileUrl,
+      boolean archive, long timeStamp, long length, SpringConfigurationMetadata metadata)
+      throws IOException {
+    out.writeBoolean(true);
+    IOUtil.writeUTF(out, containerRef);
+    IOUtil.writeUTF(out, fileUrl);
+    out.writeBoolean(archive);
+    out.writeLong(timeStamp);
+    out.writeLong(length);
+    writeMetadata(out, metadata);
+  }
+
+  private void delete() {
+    try {
+      Files.deleteIfExists(snapshotPath);
+    } catch (IOException e) {
+      log.warn("Could not delete index snapshot " + snapshotPath, e);
+    }
+  }
+
+  private static void writeMetadata(DataOutput out, SpringConfigurationMetadata metadata)
+      throws IOException {
+    List<SpringConfigurationMetadataGroup> groups = metadata.getGroups();
+    writeSize(out, groups);
+    if (groups != null) {
+      for (SpringConfigurationMetadataGroup group : groups) {
+        IOUtil.writeUTF(out, group.getName());
+        writeNullableString(out, group.getClassName());
+        writeNullableString(out, group.getDescription());
+        writeNullableString(out, group.getSourceType());
+        writeNullableString(out, group.getSourceMethod());
+      }
+    }
+
+    List<SpringConfigurationMetadataProperty> properties = metadata.getProperties();
+    writeSize(out, properties);
+    if (properties != null) {
+      for (SpringConfigurationMetadataProperty property : properties) {
+        IOUtil.writeUTF(out, property.getName());
+        writeNullableString(out, property.getClassName());
+        writeNullableString(out, property.getDescription());
+        writeNullableString(out, property.getSourceType());
+        SpringConfigurationMetadataDeprecation deprecation = property.getDeprecation();
+        out.writeBoolean(deprecation != null);
+        if (deprecation != null) {
+          SpringConfigurationMetadataDeprecationLevel level = deprecation.getLevel();
+          DataInputOutputUtil.writeINT(out, level != null ? level.ordinal() + 1 : 0);
+          writeNullableString(out, deprecation.getReason());
+          writeNullableString(out, deprecation.getReplacement());
+        }
+        writeObject(out, property.getDefaultValue());
+      }
+    }
+
+    List<SpringConfigurationMetadataHint> hints = metadata.getHints();
+    writeSize(out, hints);
+    if (hints != null) {
+      for (SpringConfigurationMetadataHint hint : hints) {
+        IOUtil.writeUTF(out, hint.getName());
+        SpringConfigurationMetadataHintValue[] values = hint.getValues();
+        DataInputOutputUtil.writeINT(out, values != null ? values.length + 1 : 0);
+        if (values != null) {
+          for (SpringConfigurationMetadataHintValue value : values) {
+            writeObject(out, value.getNameAsObjOrArray());
+            writeNullableString(out, value.getDescription());
+          }
+        }
+        SpringConfigurationMetadataValueProvider[] providers = hint.getProviders();
+        DataInputOutputUtil.writeINT(out, providers != null ? providers.length + 1 : 0);
+        if (providers != null) {
+          for (SpringConfigurationMetadataValueProvider provider : providers) {
+            SpringConfigurationMetadataValueProviderType type = provider.getType();
+            DataInputOutputUtil.writeINT(out, type != null ? type.ordinal() + 1 : 0);
+            SpringConfigurationMetadataValueProviderParams parameters = provider.getParameters();
+            out.writeBoolean(parameters != null);
+            if (parameters != null) {
+              writeNullableString(out, parameters.getTarget());
+              out.writeBoolean(parameters.isConcrete());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static SpringConfigurationMetadata readMetadata(DataInput in) throws IOException {
+    SpringConfigurationMetadata metadata = new SpringConfigurationMetadata();
+
+    int numOfGroups = readSize(in);
+    if (numOfGroups != -1) {
+      List<SpringConfigurationMetadataGroup> groups = new ArrayList<>(numOfGroups);
+      for (int i = 0; i < numOfGroups; i++) {
+        SpringConfigurationMetadataGroup group = new SpringConfigurationMetadataGroup();
+        group.setName(IOUtil.readUTF(in));
+        group.setClassName(readNullableString(in));
+        group.setDescription(readNullableString(in));
+        group.setSourceType(readNullableString(in));
+        group.setSourceMethod(readNullableString(in));
+        groups.add(group);
+      }
+      metadata.setGroups(groups);
+    }
+
+    int numOfProperties = readSize(in);
+    List<SpringConfigurationMetadataProperty> properties =
+        new ArrayList<>(Math.max(numOfProperties, 0));
+    for (int i = 0; i < numOfProperties; i++) {
+      SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+      property.setName(IOUtil.readUTF(in));
+      property.setClassName(readNullableString(in));
+      property.setDescription(readNullableString(in));
+      property.setSourceType(readNullableString(in));
+      if (in.readBoolean()) {
+        SpringConfigurationMetadataDeprecation deprecation =
+            new SpringConfigurationMetadataDeprecation();
+        int level = DataInputOutputUtil.readINT(in);
+        deprecation.setLevel(
+            level != 0 ? SpringConfigurationMetadataDeprecationLevel.values()[level - 1] : null);
+        deprecation.setReason(readNullableString(in));
+        deprecation.setReplacement(readNullableString(in));
+        property.setDeprecation(deprecation);
+      }
+      property.setDefaultValue(readObject(in));
+      properties.add(property);
+    }
+    metadata.setProperties(properties);
+
+    int numOfHints = readSize(in);
+    if (numOfHints != -1) {
+      List<SpringConfigurationMetadataHint> hints = new ArrayList<>(numOfHints);
+      for (int i = 0; i < numOfHints; i++) {
+        SpringConfigurationMetadataHint hint = new SpringConfigurationMetadataHint();
+        hint.setName(IOUtil.readUTF(in));
+        int numOfValues = DataInputOutputUtil.readINT(in) - 1;
+        if (numOfValues != -1) {
+          SpringConfigurationMetadataHintValue[] values =
+              new SpringConfigurationMetadataHintValue[numOfValues];
+          for (int j = 0; j < numOfValues; j++) {
+            values[j] = new SpringConfigurationMetadataHintValue(readObject(in),
+                readNullableString(in));
+          }
+          hint.setValues(values);
+        }
+        int numOfProviders = DataInputOutputUtil.readINT(in) - 1;
+        if (numOfProviders != -1) {
+          SpringConfigurationMetadataValueProvider[] providers =
+              new SpringConfigurationMetadataValueProvider[numOfProviders];
+          for (int j = 0; j < numOfProviders; j++) {
+            SpringConfigurationMetadataValueProvider provider =
+                new SpringConfigurationMetadataValueProvider();
+            int type = DataInputOutputUtil.readINT(in);
+            provider.setType(
+                type != 0 ? SpringConfigurationMetadataValueProviderType.values()[type - 1] : null);
+            if (in.readBoolean()) {
+              SpringConfigurationMetadataValueProviderParams parameters =
+                  new SpringConfigurationMetadataValueProviderParams();
+              parameters.setTarget(readNullableString(in));
+              parameters.setConcrete(in.readBoolean());
+              provider.setParameters(parameters);
+            }
+            providers[j] = provider;
+          }
+          hint.setProviders(providers);
+        }
+        // same post processing gson would have done had we parsed the json
+        hint.doOnGsonDeserialization();
+        hints.add(hint);
+      }
+      metadata.setHints(hints);
+    }
+    return metadata;
+  }
+
+  private static void writeSize(DataOutput out, @Nullable Collection<?> collection)
+      throws IOException {
+    DataInputOutputUtil.writeINT(out, collection != null ? collection.size() + 1 : 0);
+  }
+
+  /**
+   * @return size of the collection, -1 if the collection was null
+   */
+  private static int readSize(DataInput in) throws IOException {
+    return DataInputOutputUtil.readINT(in) - 1;
+  }
+
+  private static void writeNullableString(DataOutput out, @Nullable String value)
+      throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      IOUtil.writeUTF(out, value);
+    }
+  }
+
+  @Nullable
+  private static String readNullableString(DataInput in) throws IOException {
+    return in.readBoolean() ? IOUtil.readUTF(in) : null;
+  }
+
+  /**
+   * Default values & hint values are free form json values. Gson binds them to strings, doubles, booleans, lists & maps
+   */
+  private static void writeObject(DataOutput out, @Nullable Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      IOUtil.writeUTF(out, (String) value);
+    } else if (value instanceof Number) {
+      out.writeByte(NUMBER);
+      out.writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Collection) {
+      out.writeByte(LIST);
+      Collection<?> values = (Collection<?>) value;
+      DataInputOutputUtil.writeINT(out, values.size());
+      for (Object element : values) {
+        writeObject(out, element);
+      }
+    } else if (value instanceof Map) {
+      out.writeByte(MAP);
+      Map<?, ?> entries = (Map<?, ?>) value;
+      DataInputOutputUtil.writeINT(out, entries.size());
+      for (Map.Entry<?, ?> entry : entries.entrySet()) {
+        IOUtil.writeUTF(out, String.valueOf(entry.getKey()));
+        writeObject(out, entry.getValue());
+      }
+    } else {
+      out.writeByte(STRING);
+      IOUtil.writeUTF(out, value.toString());
+    }
+  }
+
+  @Nullable
+  private static Object readObject(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return IOUtil.readUTF(in);
+      case NUMBER:
+        return in.readDouble();
+      case BOOLEAN:
+        return in.readBoolean();
+      case LIST:
+        int size = DataInputOutputUtil.readINT(in);
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          values.add(readObject(in));
+        }
+        return values;
+      case MAP:
+        int numOfEntries = DataInputOutputUtil.readINT(in);
+        Map<String, Object> entries = new LinkedHashMap<>();
+        for (int i = 0; i < numOfEntries; i++) {
+          entries.put(IOUtil.readUTF(in), readObject(in));
+        }
+        return entries;
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  /**
+   * Debug logging can be enabled by adding fully classified class name/package name with # prefix
+   *
+   * @param doWhenDebug code to execute when debug is enabled
+   */
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+}
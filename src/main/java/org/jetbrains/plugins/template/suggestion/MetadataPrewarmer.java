@@ -0,0 +1,131 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import gnu.trove.THashMap;
+import org.jetbrains.plugins.template.model.metadata.ChildIndex;
+import org.jetbrains.plugins.template.model.metadata.MetadataNonPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Class backed metadata (class analysis, children trie, e.t.c) is built lazily, on the first completion under a class typed property, which makes that keystroke stall. Warmer builds it in the background once a module is indexed, starting with the types referred by most properties, so that the first completion hits a warm cache.
+ * Only the properties owned by the overlay of the module are warmed, as the delegate of a property is resolved against a module & the library layer is shared by modules.
+ * Warming is optional & is enabled with the `spring.assistant.prewarm` system property. Number of types warmed per module can be overridden with `spring.assistant.prewarm.maxTypes`
+ */
+class MetadataPrewarmer {
+
+  private static final Logger log = Logger.getInstance(MetadataPrewarmer.class);
+
+  private static final boolean ENABLED = Boolean.getBoolean("spring.assistant.prewarm");
+  private static final int MAX_TYPES =
+      Math.max(0, Integer.getInteger("spring.assistant.prewarm.maxTypes", 50));
+
+  /**
+   * Single thread, so that warming never competes with indexing (or) completion for more than a core
+   */
+  private final ExecutorService executor = AppExecutorUtil
+      .createBoundedApplicationPoolExecutor("Spring Assistant Metadata Prewarmer", 1);
+
+  static boolean isEnabled() {
+    return ENABLED && MAX_TYPES > 0;
+  }
+
+  /**
+   * Schedules warming of the most used property types of the module. Each type is warmed in its own non blocking read action, which gives way to write actions & is restarted after them
+   *
+   * @param project     project the module belongs to
+   * @param module      module to warm
+   * @param searchIndex index of the module
+   * @param isStale     tells if the index has been replaced since, in which case the warming is abandoned
+   */
+  void schedule(Project project, Module module, ModuleSearchIndex searchIndex,
+      BooleanSupplier isStale) {
+    if (executor.isShutdown()) {
+      return;
+    }
+    executor.execute(() -> {
+      if (module.isDisposed() || isStale.getAsBoolean()) {
+        return;
+      }
+      List<List<SpringConfigurationMetadataProperty>> propertiesOfMostUsedTypes =
+          findPropertiesOfMostUsedTypes(searchIndex.getOverlayRoots().values());
+      debug(() -> log.debug("Warming " + propertiesOfMostUsedTypes.size()
+          + " class backed property types of module " + module.getName()));
+      for (List<SpringConfigurationMetadataProperty> properties : propertiesOfMostUsedTypes) {
+        ReadAction.nonBlocking(() -> warm(module, properties)).inSmartMode(project)
+            .expireWith(project)
+            .expireWhen(() -> module.isDisposed() || isStale.getAsBoolean()).submit(executor);
+      }
+    });
+  }
+
+  /**
+   * Abandons the warming in progress & the warming yet to start. Expected to be called once the project is closed
+   */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static void warm(Module module, List<SpringConfigurationMetadataProperty> properties) {
+    for (SpringConfigurationMetadataProperty property : properties) {
+      ProgressManager.checkCanceled();
+      property.warmUp(module);
+    }
+  }
+
+  /**
+   * @param overlayRoots roots of the overlay. Subtrees shared with the library layer are skipped
+   * @return properties grouped by their type, types referred by most properties first. Types that can never be backed by a class with children (primitives & `java.lang` types) are left out
+   */
+  private static List<List<SpringConfigurationMetadataProperty>> findPropertiesOfMostUsedTypes(
+      Collection<MetadataSuggestionNode> overlayRoots) {
+    Map<String, List<SpringConfigurationMetadataProperty>> classNameToProperties =
+        new THashMap<>();
+    List<MetadataSuggestionNode> nodesToVisit = new ArrayList<>(overlayRoots);
+    while (!nodesToVisit.isEmpty()) {
+      MetadataSuggestionNode node = nodesToVisit.remove(nodesToVisit.size() - 1);
+      if (node instanceof MetadataPropertySuggestionNode) {
+        SpringConfigurationMetadataProperty property =
+            ((MetadataPropertySuggestionNode) node).getProperty();
+        String className = property.getClassName();
+        if (className != null && className.indexOf('.') != -1 && !className
+            .startsWith("java.lang.")) {
+          classNameToProperties.computeIfAbsent(className, k -> new ArrayList<>()).add(property);
+        }
+      } else if (node instanceof MetadataNonPropertySuggestionNode) {
+        MetadataNonPropertySuggestionNode nonPropertyNode =
+            (MetadataNonPropertySuggestionNode) node;
+        ChildIndex<MetadataSuggestionNode> children = nonPropertyNode.getChildren();
+        if (children != null) {
+          children.values().stream().filter(nonPropertyNode::owns).forEach(nodesToVisit::add);
+        }
+      }
+    }
+    return classNameToProperties.values().stream()
+        .sorted(comparingInt(List<SpringConfigurationMetadataProperty>::size).reversed())
+        .limit(MAX_TYPES).collect(toList());
+  }
+
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+}
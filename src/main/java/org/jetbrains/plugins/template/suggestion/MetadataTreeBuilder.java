@@ -0,0 +1,277 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import org.apache.commons.collections4.Trie;
+import org.jetbrains.plugins.template.model.metadata.ChildIndex;
+import org.jetbrains.plugins.template.model.metadata.MetadataNonPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadata;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataGroup;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataHint;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jetbrains.plugins.template.model.suggestion.PathSegments.toRawPathSegments;
+import static org.jetbrains.plugins.template.model.suggestion.SuggestionNode.sanitise;
+
+/**
+ * Adds groups, properties & hints of a single metadata container to a search tree.
+ * <p>
+ * Entries of a container are sorted by name when the metadata is parsed, so consecutive keys mostly share their leading segments. Instead of searching every key from the root, the builder remembers the nodes it resolved for the previous key & resumes from the deepest node both keys share. Along with splitting each key only once, this keeps the cost of adding a container linear in the total length of its keys.
+ * Groups, properties & hints are added in separate passes (in that order), so that a group always wins over a property it conflicts with & hints find the properties they refer to already in place
+ */
+class MetadataTreeBuilder {
+
+  private static final Logger log = Logger.getInstance(MetadataTreeBuilder.class);
+
+  private final Module module;
+  /**
+   * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens, underscores, e.t.c in the keys themselves
+   */
+  private final Trie<String, MetadataSuggestionNode> roots;
+  private final ContainerNodeIndex nodeIndex;
+  private final ContainerIdRegistry containerIds;
+  private final String containerArchiveOrFileRef;
+  private final int containerId;
+
+  /**
+   * Sanitised path of the previous key
+   */
+  private String[] cursorPathSegments = new String[0];
+  /**
+   * Nodes resolved for the leading {@link #cursorLength} segments of {@link #cursorPathSegments}
+   */
+  private MetadataSuggestionNode[] cursorNodes = new MetadataSuggestionNode[8];
+  private int cursorLength;
+
+  MetadataTreeBuilder(Module module, Trie<String, MetadataSuggestionNode> roots,
+      ContainerNodeIndex nodeIndex, ContainerIdRegistry containerIds,
+      String containerArchiveOrFileRef) {
+    this.module = module;
+    this.roots = roots;
+    this.nodeIndex = nodeIndex;
+    this.containerIds = containerIds;
+    this.containerArchiveOrFileRef = containerArchiveOrFileRef;
+    this.containerId = containerIds.idOf(containerArchiveOrFileRef);
+  }
+
+  void build(SpringConfigurationMetadata springConfigurationMetadata) {
+    List<SpringConfigurationMetadataGroup> groups = springConfigurationMetadata.getGroups();
+    if (groups != null) {
+      groups.forEach(this::addGroup);
+    }
+    resetCursor();
+    springConfigurationMetadata.getProperties().forEach(this::addProperty);
+    resetCursor();
+    List<SpringConfigurationMetadataHint> hints = springConfigurationMetadata.getHints();
+    if (hints != null) {
+      hints.forEach(this::addHint);
+    }
+    resetCursor();
+  }
+
+  private void addGroup(SpringConfigurationMetadataGroup group) {
+    String[] rawPathSegments = toRawPathSegments(group.getName());
+    String[] pathSegments = toSanitisedPathSegments(rawPathSegments);
+
+    MetadataSuggestionNode closestMetadata;
+    int startIndex = resolve(pathSegments);
+    if (startIndex == 0) { // path does not have a corresponding root element
+      // lets build just the root element. Rest of the path segments will be taken care of by the addChildren method
+      MetadataNonPropertySuggestionNode newGroupSuggestionNode =
+          MetadataNonPropertySuggestionNode.newInstance(rawPathSegments[0], null, containerId);
+      if (pathSegments.length == 1) {
+        newGroupSuggestionNode.setGroup(module, group);
+      }
+      roots.put(pathSegments[0], newGroupSuggestionNode);
+      closestMetadata = newGroupSuggestionNode;
+      startIndex = moveCursorToNewRoot(newGroupSuggestionNode);
+    } else {
+      closestMetadata = cursorNodes[startIndex - 1];
+    }
+
+    if (closestMetadata.isProperty()) {
+      log.warn(
+          "Detected conflict between an existing metadata property & new group for suggestion path "
+              + closestMetadata.getPathFromRoot(module)
+              + ". Ignoring new group. Existing Property belongs to (" + containerIds
+              .describe(closestMetadata.getBelongsTo()) + "), New Group belongs to "
+              + containerArchiveOrFileRef);
+    } else {
+      // lets add container as a reference till root
+      MetadataNonPropertySuggestionNode groupSuggestionNode =
+          MetadataNonPropertySuggestionNode.class.cast(closestMetadata);
+      groupSuggestionNode.addRefCascadeTillRoot(containerId);
+
+      boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+      if (haveMoreSegmentsLeft) {
+        groupSuggestionNode.addChildren(module, group, rawPathSegments, startIndex, containerId);
+      } else {
+        // Node is an intermediate node that has neither group nor property assigned to it, lets assign this group to it
+        // Can happen when `a.b.c` is already added to the metadata tree from an earlier metadata source & now we are trying to add a group for `a.b`
+        groupSuggestionNode.setGroup(module, group);
+      }
+      nodeIndex.add(containerId, pathSegments);
+    }
+  }
+
+  private void addProperty(SpringConfigurationMetadataProperty property) {
+    String[] rawPathSegments = toRawPathSegments(property.getName());
+    String[] pathSegments = toSanitisedPathSegments(rawPathSegments);
+
+    MetadataSuggestionNode closestMetadata;
+    int startIndex = resolve(pathSegments);
+    if (startIndex == 0) { // path does not have a corresponding root element
+      if (pathSegments.length == 1) {
+        closestMetadata = MetadataPropertySuggestionNode
+            .newInstance(rawPathSegments[0], property, null, containerId);
+      } else {
+        closestMetadata =
+            MetadataNonPropertySuggestionNode.newInstance(rawPathSegments[0], null, containerId);
+      }
+      roots.put(pathSegments[0], closestMetadata);
+      // since we already handled the root level item, let addChildren start from index 1 of pathSegments
+      startIndex = moveCursorToNewRoot(closestMetadata);
+    } else {
+      closestMetadata = cursorNodes[startIndex - 1];
+    }
+
+    boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+    if (haveMoreSegmentsLeft) {
+      if (!closestMetadata.isProperty()) {
+        MetadataNonPropertySuggestionNode.class.cast(closestMetadata)
+            .addChildren(property, rawPathSegments, startIndex, containerId);
+        nodeIndex.add(containerId, pathSegments);
+      } else {
+        log.warn("Detected conflict between a new group & existing property for suggestion path "
+            + closestMetadata.getPathFromRoot(module)
+            + ". Ignoring property. Existing non property node belongs to (" + containerIds
+            .describe(closestMetadata.getBelongsTo()) + "), New property belongs to "
+            + containerArchiveOrFileRef);
+      }
+    } else {
+      if (!closestMetadata.isProperty()) {
+        log.warn(
+            "Detected conflict between a new metadata property & existing non property node for suggestion path "
+                + closestMetadata.getPathFromRoot(module)
+                + ". Ignoring property. Existing non property node belongs to (" + containerIds
+                .describe(closestMetadata.getBelongsTo()) + "), New property belongs to "
+                + containerArchiveOrFileRef);
+      } else {
+        closestMetadata.addRefCascadeTillRoot(containerId);
+        nodeIndex.add(containerId, pathSegments);
+        MetadataSuggestionNode duplicate = closestMetadata;
+        debug(() -> log.debug(
+            "Detected a duplicate metadata property for suggestion path " + duplicate
+                .getPathFromRoot(module) + ". Ignoring property. Existing property belongs to ("
+                + containerIds.describe(duplicate.getBelongsTo())
+                + "), New property belongs to " + containerArchiveOrFileRef));
+      }
+    }
+  }
+
+  private void addHint(SpringConfigurationMetadataHint hint) {
+    String[] pathSegments =
+        toSanitisedPathSegments(toRawPathSegments(hint.getExpectedPropertyName()));
+    if (resolve(pathSegments) != pathSegments.length) {
+      return;
+    }
+    MetadataSuggestionNode closestMetadata = cursorNodes[pathSegments.length - 1];
+    if (!closestMetadata.isProperty()) {
+      log.warn("Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata
+          .getPathFromRoot(module)
+          + " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to ("
+          + containerIds.describe(closestMetadata.getBelongsTo()) + "), New hint belongs "
+          + containerArchiveOrFileRef);
+    } else {
+      MetadataPropertySuggestionNode propertySuggestionNode =
+          MetadataPropertySuggestionNode.class.cast(closestMetadata);
+      if (hint.representsValueOfMap()) {
+        propertySuggestionNode.getProperty().setValueHint(hint);
+      } else {
+        propertySuggestionNode.getProperty().setGenericOrKeyHint(hint);
+      }
+    }
+  }
+
+  /**
+   * Resolves nodes along the path as deep as the tree goes. Segments the path shares with the previous key are taken from the cursor, so only the remaining segments are looked up
+   *
+   * @param pathSegments sanitised path segments
+   * @return number of leading segments resolved. Nodes for these are available in the cursor
+   */
+  private int resolve(String[] pathSegments) {
+    int resolved = 0;
+    int shared = Math.min(cursorLength, pathSegments.length);
+    while (resolved < shared && cursorPathSegments[resolved].equals(pathSegments[resolved])) {
+      resolved++;
+    }
+    if (cursorNodes.length < pathSegments.length) {
+      cursorNodes = Arrays.copyOf(cursorNodes, pathSegments.length);
+    }
+
+    while (resolved < pathSegments.length) {
+      MetadataSuggestionNode node = resolved == 0 ?
+          roots.get(pathSegments[0]) :
+          findChild(cursorNodes[resolved - 1], pathSegments[resolved]);
+      if (node == null) {
+        break;
+      }
+      cursorNodes[resolved++] = node;
+    }
+    cursorPathSegments = pathSegments;
+    cursorLength = resolved;
+    return resolved;
+  }
+
+  private int moveCursorToNewRoot(MetadataSuggestionNode root) {
+    cursorNodes[0] = root;
+    cursorLength = 1;
+    return 1;
+  }
+
+  private void resetCursor() {
+    cursorPathSegments = new String[0];
+    Arrays.fill(cursorNodes, null);
+    cursorLength = 0;
+  }
+
+  @Nullable
+  private static MetadataSuggestionNode findChild(MetadataSuggestionNode parent,
+      String pathSegment) {
+    if (parent.isProperty()) {
+      return null;
+    }
+    ChildIndex<MetadataSuggestionNode> children =
+        MetadataNonPropertySuggestionNode.class.cast(parent).getChildren();
+    return children != null ? children.get(pathSegment) : null;
+  }
+
+  /**
+   * Equivalent of splitting the trimmed name on periods & trimming each of the parts, without going through regex
+   */
+  private static String[] toSanitisedPathSegments(String[] rawPathSegments) {
+    String[] segments = new String[rawPathSegments.length];
+    for (int i = 0; i < rawPathSegments.length; i++) {
+      segments[i] = sanitise(rawPathSegments[i]);
+    }
+    return segments;
+  }
+
+  /**
+   * Debug logging can be enabled by adding fully classified class name/package name with # prefix
+   *
+   * @param doWhenDebug code to execute when debug is enabled
+   */
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+}
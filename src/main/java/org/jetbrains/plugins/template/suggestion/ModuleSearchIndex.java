@@ -0,0 +1,121 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import gnu.trove.THashMap;
+import lombok.Getter;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static java.util.Comparator.comparingInt;
+
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.collections4.TrieUtils.unmodifiableTrie;
+
+/**
+ * Point in time view of the suggestion index of a module, along with the containers that were seen while building it.
+ * Once published, an index is never modified. Reindexing builds the next version on the side & replaces the published instance in one go, so searches never see a partially built (or) partially cleaned up index & need no locking
+ * <p>
+ * Index is made of two layers. {@link LibraryLayer} that is shared with other modules having the same libraries & an overlay holding metadata generated by the module itself.
+ * A root in the overlay shadows the root with the same name in the library layer. Overlay copies only the library nodes along the paths it adds metadata to & shares the rest of the subtrees with the library layer, so the shadowing root is always a superset of the one it hides
+ */
+@Getter
+class ModuleSearchIndex {
+
+  static final ModuleSearchIndex EMPTY =
+      new ModuleSearchIndex(LibraryLayer.EMPTY, new PatriciaTrie<>(), new THashMap<>());
+
+  private final LibraryLayer libraryLayer;
+  /**
+   * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens, underscores, e.t.c in the keys themselves
+   */
+  private final Trie<String, MetadataSuggestionNode> overlayRoots;
+  private final Map<String, MetadataContainerInfo> seenContainerPathToContainerInfo;
+  @Nullable
+  private volatile SegmentIndex overlaySegmentIndex;
+
+  ModuleSearchIndex(LibraryLayer libraryLayer, Trie<String, MetadataSuggestionNode> overlayRoots,
+      Map<String, MetadataContainerInfo> seenContainerPathToContainerInfo) {
+    this.libraryLayer = libraryLayer;
+    this.overlayRoots = unmodifiableTrie(overlayRoots);
+    this.seenContainerPathToContainerInfo = unmodifiableMap(seenContainerPathToContainerInfo);
+  }
+
+  @Nullable
+  MetadataSuggestionNode findRoot(String sanitisedName) {
+    MetadataSuggestionNode root = overlayRoots.get(sanitisedName);
+    return root != null ? root : libraryLayer.getRoots().get(sanitisedName);
+  }
+
+  Collection<MetadataSuggestionNode> findRootsWithPrefix(String sanitisedPrefix) {
+    return merge(libraryLayer.getRoots().prefixMap(sanitisedPrefix),
+        overlayRoots.prefixMap(sanitisedPrefix));
+  }
+
+  Collection<MetadataSuggestionNode> getRoots() {
+    return merge(libraryLayer.getRoots(), overlayRoots);
+  }
+
+  /**
+   * @param sanitisedPrefix prefix to match names against
+   * @return paths from the root to the nodes below the roots (at any depth) whose name starts with the given prefix, shallowest first
+   */
+  List<List<SuggestionNode>> findPathsBelowRootsWithPrefix(String sanitisedPrefix) {
+    List<SegmentIndex.Entry> entries = new ArrayList<>();
+    getOverlaySegmentIndex().collectEntriesWithPrefix(sanitisedPrefix, rootName -> true, entries);
+    libraryLayer.getSegmentIndex().collectEntriesWithPrefix(sanitisedPrefix,
+        rootName -> !overlayRoots.containsKey(rootName), entries);
+    entries.sort(comparingInt(SegmentIndex.Entry::getDepth));
+    List<List<SuggestionNode>> paths = new ArrayList<>(entries.size());
+    entries.forEach(entry -> paths.add(entry.getNodesFromRoot()));
+    return paths;
+  }
+
+  boolean isEmpty() {
+    return libraryLayer.getRoots().isEmpty() && overlayRoots.isEmpty();
+  }
+
+  /**
+   * @return modifiable copy of the seen containers, to be used for building the next version of the index
+   */
+  Map<String, MetadataContainerInfo> copySeenContainers() {
+    return new THashMap<>(seenContainerPathToContainerInfo);
+  }
+
+  private SegmentIndex getOverlaySegmentIndex() {
+    SegmentIndex index = overlaySegmentIndex;
+    if (index == null) {
+      // racing threads might end up building the index more than once, which is harmless as the overlay is never modified
+      index = new SegmentIndex(overlayRoots);
+      overlaySegmentIndex = index;
+    }
+    return index;
+  }
+
+  private static Collection<MetadataSuggestionNode> merge(
+      SortedMap<String, MetadataSuggestionNode> libraryRoots,
+      SortedMap<String, MetadataSuggestionNode> overlayRoots) {
+    if (overlayRoots.isEmpty()) {
+      return libraryRoots.values();
+    }
+    if (libraryRoots.isEmpty()) {
+      return overlayRoots.values();
+    }
+    List<MetadataSuggestionNode> roots = new ArrayList<>(overlayRoots.values());
+    libraryRoots.forEach((name, root) -> {
+      if (!overlayRoots.containsKey(name)) {
+        roots.add(root);
+      }
+    });
+    return roots;
+  }
+
+}
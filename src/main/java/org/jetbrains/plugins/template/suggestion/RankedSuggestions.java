@@ -0,0 +1,142 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.codeInsight.completion.PrioritizedLookupElement;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.jetbrains.plugins.template.model.suggestion.Suggestion;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionCollector;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import static java.util.Comparator.comparingInt;
+
+/**
+ * Ranks the results of a search by {@link SuggestionScorer} as the tree is walked. Only the best `limit` suggestions are tracked (in a bounded heap), as that is all the popup can show for short prefixes. Rest are only counted, as all of them are needed only when completion is invoked again, in which case the search is run without a limit.
+ * First `limit` suggestions are converted to lookup elements & handed over to the consumer as soon as they are found, so that the popup shows up before the search completes. Suggestions that make it to the top after that are handed over once the search completes, as they can still be pushed out by a later one, so at most twice the `limit` suggestions are handed over. Each carries its score as priority, so the popup places the late better matches above the earlier ones.
+ * Since the results for a longer prefix are not a subset of the best results of a shorter one, completion needs to be restarted on every prefix change when the results are capped
+ */
+public class RankedSuggestions implements SuggestionCollector {
+
+  /**
+   * Number of suggestions ranked & shown by default. Can be overridden with the `spring.assistant.completion.maxResults` system property
+   */
+  public static final int DEFAULT_LIMIT =
+      Math.max(1, Integer.getInteger("spring.assistant.completion.maxResults", 100));
+
+  private static final Comparator<ScoredSuggestion> WORST_FIRST =
+      comparingInt(ScoredSuggestion::getScore).thenComparing(ScoredSuggestion::getSuggestion,
+          Comparator.<Suggestion>reverseOrder());
+
+  private final String[] querySegmentPrefixes;
+  private final int limit;
+  private final LookupElementConsumer consumer;
+  private final PriorityQueue<ScoredSuggestion> top;
+  /**
+   * Search walks each node of the tree once, so a suggestion is never collected twice
+   */
+  private int numOfMatches;
+  private int numOfHandedOver;
+
+  /**
+   * @param querySegmentPrefixes sanitised query segments the suggestions are ranked against
+   * @param limit                max number of suggestions to rank, {@link Integer#MAX_VALUE} to hand over all of them
+   * @param consumer             consumer of the suggestions that make it to the top
+   */
+  RankedSuggestions(String[] querySegmentPrefixes, int limit, LookupElementConsumer consumer) {
+    this.querySegmentPrefixes = querySegmentPrefixes;
+    this.limit = limit;
+    this.consumer = consumer;
+    this.top = new PriorityQueue<>(Math.min(limit, 16) + 1, WORST_FIRST);
+  }
+
+  @Override
+  public void collect(Suggestion suggestion) {
+    numOfMatches++;
+    ScoredSuggestion scoredSuggestion =
+        new ScoredSuggestion(suggestion, SuggestionScorer.score(suggestion, querySegmentPrefixes));
+    if (top.size() < limit) {
+      top.add(scoredSuggestion);
+      handOver(scoredSuggestion);
+      return;
+    }
+    if (WORST_FIRST.compare(scoredSuggestion, top.peek()) > 0) {
+      // evicted suggestion stays with the consumer, if it was handed over already
+      top.poll();
+      top.add(scoredSuggestion);
+    }
+  }
+
+  /**
+   * Stops early if the consumer is stopped
+   *
+   * @param suggestions suggestions to add
+   */
+  void addAll(@Nullable Iterable<Suggestion> suggestions) {
+    if (suggestions != null) {
+      for (Suggestion suggestion : suggestions) {
+        if (isStopped()) {
+          return;
+        }
+        collect(suggestion);
+      }
+    }
+  }
+
+  /**
+   * Hands over the best suggestions that are not with the consumer yet. To be called once the search completes
+   */
+  void finish() {
+    for (ScoredSuggestion scoredSuggestion : top) {
+      if (isStopped()) {
+        return;
+      }
+      if (!scoredSuggestion.isHandedOver()) {
+        handOver(scoredSuggestion);
+      }
+    }
+  }
+
+  private void handOver(ScoredSuggestion scoredSuggestion) {
+    consumer.consume(PrioritizedLookupElement
+        .withPriority(scoredSuggestion.getSuggestion().newLookupElement(),
+            scoredSuggestion.getScore()));
+    scoredSuggestion.setHandedOver(true);
+    numOfHandedOver++;
+  }
+
+  @Override
+  public boolean isStopped() {
+    return consumer.isStopped();
+  }
+
+  public boolean isEmpty() {
+    return numOfMatches == 0;
+  }
+
+  /**
+   * @return true if there were more matches than the ones that were handed over to the consumer
+   */
+  public boolean hasMore() {
+    return numOfMatches > numOfHandedOver;
+  }
+
+  /**
+   * @return total number of matches
+   */
+  public int size() {
+    return numOfMatches;
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  private static class ScoredSuggestion {
+    private final Suggestion suggestion;
+    private final int score;
+    @Setter
+    private boolean handedOver;
+  }
+
+}
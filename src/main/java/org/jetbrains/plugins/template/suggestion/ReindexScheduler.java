@@ -0,0 +1,172 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import gnu.trove.THashSet;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Coalesces reindex requests that arrive in bursts (maven import followed by a compilation, for eg) into a single run.
+ * <p>
+ * A request waits for a short quiet period before the run starts, during which further requests are merged into it. A request that arrives while a run is in progress cancels the run & requeues its modules along with the newly requested ones, so that the superseded run stops at the next container instead of running till the end.
+ * Runs never overlap, as they are executed one after the other on a single thread
+ */
+class ReindexScheduler {
+
+  private static final Logger log = Logger.getInstance(ReindexScheduler.class);
+
+  /**
+   * Quiet period after the last request before a run starts. Can be overridden with the `spring.assistant.indexing.debounceMillis` system property
+   */
+  private static final long DEBOUNCE_MILLIS =
+      Long.getLong("spring.assistant.indexing.debounceMillis", 300);
+
+  private final ReindexTask task;
+  private final ScheduledExecutorService executor = AppExecutorUtil
+      .createBoundedScheduledExecutorService("Spring Assistant Reindex Scheduler", 1);
+
+  private final Object lock = new Object();
+  @Nullable
+  private Project pendingProject;
+  private boolean pendingAllModules;
+  private final Set<String> pendingModuleNames = new THashSet<>();
+  @Nullable
+  private ScheduledFuture<?> pendingRun;
+
+  /**
+   * Cancelled only when the run in progress is superseded (or) the scheduler is shut down
+   */
+  @Nullable
+  private ProgressIndicator runningIndicator;
+  private boolean runningAllModules;
+  @Nullable
+  private Set<String> runningModuleNames;
+
+  ReindexScheduler(ReindexTask task) {
+    this.task = task;
+  }
+
+  /**
+   * @param project project to index
+   * @param modules modules to index, null if all modules of the project need to be indexed
+   */
+  void schedule(Project project, @Nullable Module[] modules) {
+    synchronized (lock) {
+      pendingProject = project;
+      if (modules == null) {
+        pendingAllModules = true;
+      } else if (!pendingAllModules) {
+        for (Module module : modules) {
+          pendingModuleNames.add(module.getName());
+        }
+      }
+
+      if (runningIndicator != null && !runningIndicator.isCanceled()) {
+        debug(() -> log.debug("Cancelling reindex in progress, as it is superseded by a new one"));
+        runningIndicator.cancel();
+        if (runningAllModules) {
+          pendingAllModules = true;
+        } else if (!pendingAllModules && runningModuleNames != null) {
+          pendingModuleNames.addAll(runningModuleNames);
+        }
+      }
+
+      if (pendingRun != null) {
+        pendingRun.cancel(false);
+      }
+      if (executor.isShutdown()) {
+        return;
+      }
+      pendingRun = executor.schedule(this::runPending, DEBOUNCE_MILLIS, MILLISECONDS);
+    }
+  }
+
+  /**
+   * Cancels the pending & the running reindex & stops accepting new requests. Expected to be called once the project is closed
+   */
+  void shutdown() {
+    synchronized (lock) {
+      pendingProject = null;
+      if (pendingRun != null) {
+        pendingRun.cancel(false);
+        pendingRun = null;
+      }
+      if (runningIndicator != null) {
+        runningIndicator.cancel();
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private void runPending() {
+    Project project;
+    Set<String> moduleNames;
+    ProgressIndicator indicator = new EmptyProgressIndicator();
+    synchronized (lock) {
+      if (pendingProject == null) {
+        return;
+      }
+      project = pendingProject;
+      moduleNames = pendingAllModules ? null : new THashSet<>(pendingModuleNames);
+      pendingProject = null;
+      pendingAllModules = false;
+      pendingModuleNames.clear();
+      pendingRun = null;
+
+      runningIndicator = indicator;
+      runningAllModules = moduleNames == null;
+      runningModuleNames = moduleNames;
+    }
+
+    try {
+      if (!project.isDisposed()) {
+        ProgressManager.getInstance()
+            .runProcess(() -> task.reindex(project, moduleNames, indicator), indicator);
+      }
+    } catch (ProcessCanceledException e) {
+      debug(() -> log.debug("Reindex cancelled for project " + project.getName()));
+    } catch (Throwable e) {
+      log.error("Exception encountered while indexing project " + project.getName(), e);
+    } finally {
+      synchronized (lock) {
+        runningIndicator = null;
+        runningModuleNames = null;
+      }
+    }
+  }
+
+  /**
+   * Debug logging can be enabled by adding fully classified class name/package name with # prefix
+   *
+   * @param doWhenDebug code to execute when debug is enabled
+   */
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+  interface ReindexTask {
+    /**
+     * Expected to check the indicator for cancellation regularly. Indicator must not be handed over to anything that cancels it on its own (write action priority read actions, for eg), as a cancelled indicator means the run is abandoned. Such work is expected to run with a child of the indicator instead
+     *
+     * @param project     project to index
+     * @param moduleNames names of the modules to index, null if all modules of the project need to be indexed
+     * @param indicator   indicator that is cancelled when the run is superseded by a newer request
+     */
+    void reindex(Project project, @Nullable Set<String> moduleNames, ProgressIndicator indicator);
+  }
+
+}
@@ -0,0 +1,89 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import lombok.Getter;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.jetbrains.plugins.template.PathList;
+import org.jetbrains.plugins.template.model.metadata.ChildIndex;
+import org.jetbrains.plugins.template.model.metadata.MetadataNonPropertySuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Index of all the nodes below the roots of a search tree, keyed by their sanitised names, irrespective of their depth. Serves queries like `ds.url` whose first segment does not match any of the roots, with a prefix lookup instead of a walk over all the trees.
+ * Covers only the nodes that are part of the tree. Children of properties that are backed by classes are resolved dynamically & are not part of the index.
+ * Path from the root to each node is recorded as the tree is walked, since an overlay shares the subtrees it does not modify with the library layer & the parent of a shared node is the one in the library layer
+ */
+class SegmentIndex {
+
+  private final Trie<String, List<Entry>> nameToEntries = new PatriciaTrie<>();
+
+  /**
+   * @param roots roots of the tree, keyed by sanitised name. Tree must not be modified after the index is built
+   */
+  SegmentIndex(Trie<String, MetadataSuggestionNode> roots) {
+    roots.forEach((rootName, root) -> addChildren(rootName, root, PathList.of(root)));
+  }
+
+  /**
+   * @param sanitisedPrefix prefix to match names against
+   * @param rootNameFilter  only nodes under roots whose name match the filter are collected
+   * @param collector       collector of the matched entries
+   */
+  void collectEntriesWithPrefix(String sanitisedPrefix, Predicate<String> rootNameFilter,
+      List<Entry> collector) {
+    for (List<Entry> entries : nameToEntries.prefixMap(sanitisedPrefix).values()) {
+      for (Entry entry : entries) {
+        if (rootNameFilter.test(entry.rootName)) {
+          collector.add(entry);
+        }
+      }
+    }
+  }
+
+  private void addChildren(String rootName, MetadataSuggestionNode parent,
+      List<SuggestionNode> nodesFromRootTillParent) {
+    if (parent.isProperty()) {
+      return;
+    }
+    ChildIndex<MetadataSuggestionNode> children =
+        MetadataNonPropertySuggestionNode.class.cast(parent).getChildren();
+    if (children != null) {
+      children.forEach((name, child) -> {
+        List<SuggestionNode> nodesFromRoot = PathList.append(nodesFromRootTillParent, child);
+        nameToEntries.computeIfAbsent(name, k -> new ArrayList<>(1))
+            .add(new Entry(rootName, nodesFromRoot));
+        addChildren(rootName, child, nodesFromRoot);
+      });
+    }
+  }
+
+  @Getter
+  static class Entry {
+    /**
+     * Sanitised name of the root the node belongs to
+     */
+    private final String rootName;
+    /**
+     * Nodes starting from the root till the node (both inclusive)
+     */
+    private final List<SuggestionNode> nodesFromRoot;
+
+    Entry(String rootName, List<SuggestionNode> nodesFromRoot) {
+      this.rootName = rootName;
+      this.nodesFromRoot = nodesFromRoot;
+    }
+
+    /**
+     * @return number of hops from the root to the node
+     */
+    int getDepth() {
+      return nodesFromRoot.size() - 1;
+    }
+  }
+
+}
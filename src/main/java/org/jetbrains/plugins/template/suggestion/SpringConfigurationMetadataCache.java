@@ -0,0 +1,190 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadata;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataGroup;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataHint;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataReader;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Project wide cache of parsed `spring-configuration-metadata.json` files, keyed by
+ * {@link MetadataContainerInfo#getContainerArchiveOrFileRef()} & {@link MetadataContainerInfo#getMarker()}.
+ * A metadata file that is shared by multiple modules (spring boot starters, for eg) is parsed only once & every module gets its own lightweight copy of it.
+ * <p>
+ * Parsed library metadata is released once all layers are built & the snapshot is written (see {@link #releaseLibraryMetadata()}), as the layers hold copies of it anyway. Only a library layer that is built afterwards needs to parse the file again
+ */
+class SpringConfigurationMetadataCache {
+
+  private static final Logger log = Logger.getInstance(SpringConfigurationMetadataCache.class);
+
+  private final Map<String, CachedMetadata> containerRefToMetadata = new ConcurrentHashMap<>();
+
+  /**
+   * @param containerInfo container whose metadata file needs to be parsed
+   * @return metadata that can be freely modified by the caller. Hints are shared between all copies as they are never modified once parsed
+   * @throws IOException if the metadata file could not be read/parsed
+   */
+  SpringConfigurationMetadata getOrParse(MetadataContainerInfo containerInfo) throws IOException {
+    CachedMetadata cachedMetadata = containerRefToMetadata
+        .compute(containerInfo.getContainerArchiveOrFileRef(),
+            (containerRef, existing) -> existing != null && existing.marker == containerInfo
+                .getMarker() ? existing : new CachedMetadata(containerInfo));
+    try {
+      return copyForModule(cachedMetadata.get());
+    } catch (IOException e) {
+      // lets not hold on to failures, so that the next attempt parses the file again
+      containerRefToMetadata.remove(containerInfo.getContainerArchiveOrFileRef(), cachedMetadata);
+      throw e;
+    }
+  }
+
+  /**
+   * @param containerArchiveOrFileRef container reference
+   * @return metadata as parsed from the file, null if the container is not yet parsed (or) its metadata got released. Must not be modified by the caller
+   */
+  @Nullable
+  SpringConfigurationMetadata peek(String containerArchiveOrFileRef) {
+    CachedMetadata cachedMetadata = containerRefToMetadata.get(containerArchiveOrFileRef);
+    return cachedMetadata != null ? cachedMetadata.metadata : null;
+  }
+
+  /**
+   * Seeds the cache with metadata that was parsed earlier (in a previous session, for eg), so that the file need not be parsed again
+   *
+   * @param containerInfo container to which the metadata belongs
+   * @param metadata      parsed metadata
+   */
+  void prime(MetadataContainerInfo containerInfo, SpringConfigurationMetadata metadata) {
+    CachedMetadata cachedMetadata = new CachedMetadata(containerInfo);
+    cachedMetadata.metadata = metadata;
+    containerRefToMetadata.put(containerInfo.getContainerArchiveOrFileRef(), cachedMetadata);
+  }
+
+  /**
+   * Releases parsed metadata of all archives, while retaining the markers, so that an archive that is requested again is parsed afresh. Metadata of project containers is retained, as the overlays consume all of it every time a module is reindexed
+   */
+  void releaseLibraryMetadata() {
+    containerRefToMetadata.values().stream()
+        .filter(cachedMetadata -> cachedMetadata.containerInfo.isArchive())
+        .forEach(CachedMetadata::release);
+  }
+
+  /**
+   * Drops metadata of all containers that are no longer referred by any of the modules
+   *
+   * @param liveContainerRefs container references that are still in use
+   */
+  void retainAll(Collection<String> liveContainerRefs) {
+    containerRefToMetadata.keySet().retainAll(liveContainerRefs);
+  }
+
+  private static SpringConfigurationMetadata parse(MetadataContainerInfo containerInfo)
+      throws IOException {
+    debug(() -> log.debug("Parsing metadata file " + containerInfo.getFileUrl()));
+    VirtualFile metadataFile = containerInfo.getMetadataFile();
+    if (metadataFile == null) {
+      throw new FileNotFoundException(containerInfo.getFileUrl());
+    }
+    try (InputStream inputStream = metadataFile.getInputStream()) {
+      SpringConfigurationMetadata springConfigurationMetadata = SpringConfigurationMetadataReader
+          .read(new BufferedReader(new InputStreamReader(inputStream, UTF_8)));
+      // lets sort once here, so that the copies handed over to modules are already in the order in which they are indexed
+      if (springConfigurationMetadata.getGroups() != null) {
+        springConfigurationMetadata.getGroups()
+            .sort(comparing(SpringConfigurationMetadataGroup::getName));
+      }
+      if (springConfigurationMetadata.getProperties() != null) {
+        springConfigurationMetadata.getProperties()
+            .sort(comparing(SpringConfigurationMetadataProperty::getName));
+      }
+      if (springConfigurationMetadata.getHints() != null) {
+        springConfigurationMetadata.getHints()
+            .sort(comparing(SpringConfigurationMetadataHint::getName));
+      }
+      return springConfigurationMetadata;
+    }
+  }
+
+  private static SpringConfigurationMetadata copyForModule(SpringConfigurationMetadata source) {
+    SpringConfigurationMetadata copy = new SpringConfigurationMetadata();
+    if (source.getGroups() != null) {
+      copy.setGroups(
+          source.getGroups().stream().map(SpringConfigurationMetadataGroup::copy).collect(
+              toList()));
+    }
+    if (source.getProperties() != null) {
+      copy.setProperties(
+          source.getProperties().stream().map(SpringConfigurationMetadataProperty::copy)
+              .collect(toList()));
+    } else {
+      copy.setProperties(new ArrayList<>());
+    }
+    if (source.getHints() != null) {
+      copy.setHints(new ArrayList<>(source.getHints()));
+    }
+    return copy;
+  }
+
+  /**
+   * Debug logging can be enabled by adding fully classified class name/package name with # prefix
+   *
+   * @param doWhenDebug code to execute when debug is enabled
+   */
+  private static void debug(Runnable doWhenDebug) {
+    if (log.isDebugEnabled()) {
+      doWhenDebug.run();
+    }
+  }
+
+  private static class CachedMetadata {
+    private final MetadataContainerInfo containerInfo;
+    private final long marker;
+    @Nullable
+    private volatile SpringConfigurationMetadata metadata;
+
+    CachedMetadata(MetadataContainerInfo containerInfo) {
+      this.containerInfo = containerInfo;
+      this.marker = containerInfo.getMarker();
+    }
+
+    /**
+     * Parses the file on first access (or) on first access after the metadata got released. Modules that request the same file concurrently wait for the first one to finish parsing instead of parsing it again
+     */
+    SpringConfigurationMetadata get() throws IOException {
+      SpringConfigurationMetadata parsed = metadata;
+      if (parsed == null) {
+        synchronized (this) {
+          parsed = metadata;
+          if (parsed == null) {
+            parsed = parse(containerInfo);
+            metadata = parsed;
+          }
+        }
+      }
+      return parsed;
+    }
+
+    synchronized void release() {
+      metadata = null;
+    }
+  }
+
+}
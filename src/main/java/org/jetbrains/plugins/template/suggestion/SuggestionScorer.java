@@ -0,0 +1,140 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.plugins.template.model.suggestion.Suggestion;
+
+/**
+ * Scores a suggestion by how well the text it displays matches the query. Higher the score, better the match.
+ * <p>
+ * Query segments are matched in order against the segments of the displayed text, each against the first segment (at or after the one matched by the previous query segment) it matches as an exact name, as a prefix (or) as a camel hump (`ds` for `data-source`/`dataSource`). Segments skipped in between & segments left over after the last match count against the suggestion, as do deprecations
+ */
+@UtilityClass
+class SuggestionScorer {
+
+  private static final int EXACT_SEGMENT_SCORE = 30;
+  private static final int PREFIX_SEGMENT_SCORE = 20;
+  private static final int CAMEL_HUMP_SEGMENT_SCORE = 10;
+  private static final int SKIPPED_SEGMENT_PENALTY = 2;
+  private static final int TRAILING_SEGMENT_PENALTY = 3;
+  private static final int DEPRECATED_PENALTY = 15;
+  private static final int DEPRECATED_ERROR_PENALTY = 50;
+
+  /**
+   * @param suggestion           suggestion to score
+   * @param querySegmentPrefixes sanitised query segments
+   * @return score of the suggestion
+   */
+  static int score(Suggestion suggestion, String[] querySegmentPrefixes) {
+    // segments are matched as is, without joining (or) sanitising them, as this runs for every match of the search. Segments without a name are not displayed & so are not counted
+    int numOfSegments = suggestion.getNumOfSegmentsToDisplay();
+    int score = 0;
+    int segmentIndex = 0;
+    int numOfNamedSegmentsConsumed = 0;
+    for (String querySegmentPrefix : querySegmentPrefixes) {
+      if (querySegmentPrefix.isEmpty()) {
+        continue;
+      }
+      int numOfSkipped = 0;
+      for (int i = segmentIndex; i < numOfSegments; i++) {
+        String rawSegment = suggestion.getSegmentToDisplay(i);
+        if (rawSegment == null) {
+          continue;
+        }
+        int segmentScore = scoreSegment(rawSegment, querySegmentPrefix);
+        if (segmentScore != 0) {
+          score += segmentScore - numOfSkipped * SKIPPED_SEGMENT_PENALTY;
+          numOfNamedSegmentsConsumed += numOfSkipped + 1;
+          segmentIndex = i + 1;
+          break;
+        }
+        numOfSkipped++;
+      }
+    }
+    int numOfNamedSegments = 0;
+    for (int i = 0; i < numOfSegments; i++) {
+      if (suggestion.getSegmentToDisplay(i) != null) {
+        numOfNamedSegments++;
+      }
+    }
+    score -= (numOfNamedSegments - numOfNamedSegmentsConsumed) * TRAILING_SEGMENT_PENALTY;
+
+    if (suggestion.getDeprecationLevel() != null) {
+      switch (suggestion.getDeprecationLevel()) {
+        case error:
+          score -= DEPRECATED_ERROR_PENALTY;
+          break;
+        case warning:
+          score -= DEPRECATED_PENALTY;
+          break;
+      }
+    }
+    return score;
+  }
+
+  private static int scoreSegment(String rawSegment, String querySegmentPrefix) {
+    int sanitisedMatchEnd = sanitisedMatchEnd(rawSegment, querySegmentPrefix);
+    if (sanitisedMatchEnd != -1) {
+      return sanitisedMatchEnd == rawSegment.length() ?
+          EXACT_SEGMENT_SCORE :
+          PREFIX_SEGMENT_SCORE;
+    }
+    if (humpsStartWith(rawSegment, querySegmentPrefix)) {
+      return CAMEL_HUMP_SEGMENT_SCORE;
+    }
+    return 0;
+  }
+
+  /**
+   * Matches the sanitised form of the segment against the prefix, without sanitising the segment
+   *
+   * @return index in the segment after which nothing but ignored chars remain if the sanitised segment starts with the prefix (length of the segment, if it is an exact match), -1 otherwise
+   */
+  private static int sanitisedMatchEnd(String rawSegment, String querySegmentPrefix) {
+    int i = skipIgnored(rawSegment, 0);
+    for (int j = 0; j < querySegmentPrefix.length(); j++) {
+      if (i == rawSegment.length()
+          || Character.toLowerCase(rawSegment.charAt(i)) != querySegmentPrefix.charAt(j)) {
+        return -1;
+      }
+      i = skipIgnored(rawSegment, i + 1);
+    }
+    return i;
+  }
+
+  private static int skipIgnored(String rawSegment, int from) {
+    while (from < rawSegment.length() && isIgnored(rawSegment.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  private static boolean isIgnored(char c) {
+    return c == '-' || c == '_' || c <= ' ';
+  }
+
+  /**
+   * Humps are the lower cased first characters of each word in the segment. Words are delimited by `-`, `_` (or) an upper cased character
+   *
+   * @return true if the humps of the segment start with the prefix
+   */
+  private static boolean humpsStartWith(String rawSegment, String querySegmentPrefix) {
+    int matched = 0;
+    boolean wordStart = true;
+    for (int i = 0; i < rawSegment.length() && matched < querySegmentPrefix.length(); i++) {
+      char c = rawSegment.charAt(i);
+      if (c == '-' || c == '_') {
+        wordStart = true;
+      } else {
+        if (wordStart || Character.isUpperCase(c)) {
+          if (Character.toLowerCase(c) != querySegmentPrefix.charAt(matched)) {
+            return false;
+          }
+          matched++;
+        }
+        wordStart = false;
+      }
+    }
+    return matched == querySegmentPrefix.length();
+  }
+
+}
@@ -1,9 +1,10 @@
 package org.jetbrains.plugins.template.suggestion;
 
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
@@ -31,6 +32,11 @@ public interface SuggestionService {
   List<SuggestionNode> findMatchedNodesRootTillEnd(Project project, Module module,
                                                    List<String> containerElements);
 
+  /**
+   * @return tracker whose count changes whenever the index of a module is replaced. Lets the nodes resolved from the index be cached till the index changes
+   */
+  ModificationTracker getIndexModificationTracker();
+
   @SuppressWarnings("BooleanMethodIsAlwaysInverted")
   boolean canProvideSuggestions(Project project, Module module);
 
@@ -38,15 +44,19 @@ public interface SuggestionService {
    * @param project                       project to which these suggestions should be shown
    * @param module                        module to which these suggestions should be shown
    * @param fileType                      type of file requesting suggestion
+   * @param editor                        editor in which the completion is requested. Matches of the last search from the editor are narrowed down for successive keystrokes instead of searching again
    * @param element                       element on which search is triggered. Useful for cases like identifying chioces that were already selected incase of an enum, e.t.c
    * @param ancestralKeys                 hierarchy of element from where the suggestion is requested. i.e if in yml user is trying to get suggestions for `s.a` under `spring:\n\trabbitmq.listener:` element, then this value would ['spring', 'rabbitmq.listener']
    * @param queryWithDotDelimitedPrefixes query string user is trying to search for. In the above example, the value for this would be `s.a`
    * @param siblingsToExclude             siblings to exclude from search
-   * @return results matching query string (without the containerElementsLeafToRoot). In the above example the values would be `simple.acknowledge-mode` & `simple.auto-startup`
+   * @param limit                         max number of best results handed over to the consumer, rest are only counted. {@link Integer#MAX_VALUE} hands over all the results
+   * @param consumer                      consumer to which the best results are handed over as & when they are found. Search stops early once the consumer is stopped
+   * @return results matching query string (without the containerElementsLeafToRoot), ranked against the query. In the above example the values would be `simple.acknowledge-mode` & `simple.auto-startup`
    */
   @Nullable
-  List<LookupElementBuilder> findSuggestionsForQueryPrefix(Project project, Module module,
-                                                           FileType fileType, PsiElement element, @Nullable List<String> ancestralKeys,
-                                                           String queryWithDotDelimitedPrefixes, @Nullable Set<String> siblingsToExclude);
+  RankedSuggestions findSuggestionsForQueryPrefix(Project project, Module module,
+                                                           FileType fileType, Editor editor, PsiElement element, @Nullable List<String> ancestralKeys,
+                                                           String queryWithDotDelimitedPrefixes, @Nullable Set<String> siblingsToExclude,
+                                                           int limit, LookupElementConsumer consumer);
 
 }
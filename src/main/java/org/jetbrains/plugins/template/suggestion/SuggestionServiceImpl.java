@@ -1,158 +1,147 @@
 package org.jetbrains.plugins.template.suggestion;
 
-import com.google.gson.GsonBuilder;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.roots.OrderEnumerator;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import org.apache.commons.collections4.Trie;
 import org.apache.commons.collections4.trie.PatriciaTrie;
 import org.apache.commons.lang.time.StopWatch;
+import org.jetbrains.plugins.template.PathList;
+import org.jetbrains.plugins.template.model.metadata.ArchiveProbeCache;
 import org.jetbrains.plugins.template.model.metadata.MetadataContainerInfo;
 import org.jetbrains.plugins.template.model.metadata.MetadataNonPropertySuggestionNode;
-import org.jetbrains.plugins.template.model.metadata.MetadataPropertySuggestionNode;
 import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
 import org.jetbrains.plugins.template.model.metadata.json.*;
 import org.jetbrains.plugins.template.model.suggestion.FileType;
-import org.jetbrains.plugins.template.model.suggestion.Suggestion;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
+import org.jetbrains.plugins.template.suggestion.MetadataChangeTracker.ContainerScan;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-
-import static com.intellij.openapi.application.ApplicationManager.getApplication;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.util.Arrays.stream;
-import static java.util.Collections.*;
 import static java.util.Comparator.comparing;
+import static java.util.Collections.*;
 import static java.util.stream.Collectors.*;
-import static org.jetbrains.plugins.template.GenericUtil.modifiableList;
 import static org.jetbrains.plugins.template.GenericUtil.truncateIdeaDummyIdentifier;
-import static org.jetbrains.plugins.template.model.suggestion.Suggestion.PERIOD_DELIMITER;
+import static org.jetbrains.plugins.template.model.suggestion.PathSegments.toSanitisedPathSegments;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNode.sanitise;
 
-public class SuggestionServiceImpl implements SuggestionService {
+public class SuggestionServiceImpl implements SuggestionService, Disposable {
 
   private static final Logger log = Logger.getInstance(SuggestionServiceImpl.class);
 
-  private final Map<String, Map<String, MetadataContainerInfo>>
-      moduleNameToSeenContainerPathToContainerInfo;
   /**
-   * Within the trie, all keys are stored in sanitised format to enable us find keys without worrying about hiphens, underscores, e.t.c in the keys themselves
+   * Published index of each module. Entries are only ever replaced as a whole, never modified in place
    */
-  private final Map<String, Trie<String, MetadataSuggestionNode>> moduleNameToRootSearchIndex;
-  private Future<?> currentExecution;
-  private volatile boolean indexingInProgress;
-
-  SuggestionServiceImpl() {
-    moduleNameToSeenContainerPathToContainerInfo = new THashMap<>();
-    moduleNameToRootSearchIndex = new THashMap<>();
-  }
-
-  private static String[] toSanitizedPathSegments(String element) {
-    String[] splits = element.trim().split(PERIOD_DELIMITER, -1);
-    for (int i = 0; i < splits.length; i++) {
-      splits[i] = sanitise(splits[i]);
-    }
-    return splits;
-  }
+  private final Map<String, ModuleSearchIndex> moduleNameToSearchIndex;
+  /**
+   * Incremented whenever the index of a module is replaced
+   */
+  private final SimpleModificationTracker indexModificationTracker;
+  /**
+   * Library layers, shared by all modules whose libraries have the same fingerprint
+   */
+  private final Map<String, LibraryLayerHolder> fingerprintToLibraryLayer;
+  /**
+   * Ids of containers, used by the nodes of the metadata tree to record their owners
+   */
+  private final ContainerIdRegistry containerIds;
+  /**
+   * Parsed metadata files, shared across all modules of the project
+   */
+  private final SpringConfigurationMetadataCache metadataCache;
+  /**
+   * Results of probing the archives on the classpath, shared across all modules of the project
+   */
+  private final ArchiveProbeCache archiveProbeCache;
+  /**
+   * Tracks changes to classpath roots, so that only the roots that changed are scanned on reindex
+   */
+  private final MetadataChangeTracker changeTracker;
+  /**
+   * Debounces & serializes reindex requests
+   */
+  private final ReindexScheduler reindexScheduler;
+  /**
+   * Builds class backed metadata in the background after indexing, if enabled
+   */
+  private final MetadataPrewarmer prewarmer;
+  /**
+   * On disk copy of the index, used to make suggestions available right after project open
+   */
+  @Nullable
+  private volatile MetadataIndexSnapshot snapshot;
+  private volatile boolean snapshotRestoreAttempted;
+  /**
+   * Set whenever the index changes, so that the snapshot is written only if there is anything new to write
+   */
+  private volatile boolean snapshotOutdated;
 
-  private static String[] toRawPathSegments(String element) {
-    String[] splits = element.trim().split(PERIOD_DELIMITER, -1);
-    for (int i = 0; i < splits.length; i++) {
-      splits[i] = splits[i].trim();
-    }
-    return splits;
-  }
+  /**
+   * Modules are indexed in parallel, bounded by the number of cores by default. Can be overridden with the `spring.assistant.indexing.parallelism` system property (`1` indexes modules one after the other)
+   */
+  private final ExecutorService moduleIndexingExecutor;
 
-  private static String firstPathSegment(String element) {
-    return element.trim().split(PERIOD_DELIMITER, -1)[0];
+  SuggestionServiceImpl() {
+    moduleNameToSearchIndex = new ConcurrentHashMap<>();
+    indexModificationTracker = new SimpleModificationTracker();
+    fingerprintToLibraryLayer = new ConcurrentHashMap<>();
+    containerIds = new ContainerIdRegistry();
+    metadataCache = new SpringConfigurationMetadataCache();
+    archiveProbeCache = new ArchiveProbeCache();
+    changeTracker = new MetadataChangeTracker();
+    reindexScheduler = new ReindexScheduler(this::reindexInBackground);
+    prewarmer = new MetadataPrewarmer();
+    int parallelism = Math.max(1, Integer.getInteger("spring.assistant.indexing.parallelism",
+        Runtime.getRuntime().availableProcessors()));
+    moduleIndexingExecutor = AppExecutorUtil
+        .createBoundedApplicationPoolExecutor("Spring Assistant Module Indexer", parallelism);
   }
 
   @Override
   public void init(Project project) {
+    snapshot = new MetadataIndexSnapshot(project);
+    changeTracker.subscribe(project);
     reIndex(project);
   }
 
   @Override
   public void reIndex(Project project) {
-    if (indexingInProgress) {
-      currentExecution.cancel(false);
-    }
-    //noinspection CodeBlock2Expr
-    currentExecution = getApplication().executeOnPooledThread(() -> {
-      getApplication().runReadAction(() -> {
-        indexingInProgress = true;
-        StopWatch timer = new StopWatch();
-        timer.start();
-        try {
-          debug(() -> log.debug("-> Indexing requested for project " + project.getName()));
-          // OrderEnumerator.orderEntries(project) is returning everything from all modules including root level module(which is called project in gradle terms)
-          // So, we should not be doing anything with this
-
-          Module[] modules = ModuleManager.getInstance(project).getModules();
-          for (Module module : modules) {
-            System.out.println(" module-name: "+module.getName());
-            reindexModule(emptyList(), emptyList(), module);
-          }
-        } finally {
-          indexingInProgress = false;
-          timer.stop();
-          debug(() -> log
-              .debug("<- Indexing took " + timer.toString() + " for project " + project.getName()));
-        }
-      });
-    });
+    debug(() -> log.debug("Indexing requested for project " + project.getName()));
+    reindexScheduler.schedule(project, null);
   }
 
   @Override
   public void reindex(Project project, Module[] modules) {
-    if (indexingInProgress) {
-      if (currentExecution != null) {
-        currentExecution.cancel(false);
-      }
-    }
-    //noinspection CodeBlock2Expr
-    currentExecution = getApplication().executeOnPooledThread(() -> {
-      getApplication().runReadAction(() -> {
-        debug(() -> log.debug(
-            "-> Indexing requested for a subset of modules of project " + project.getName()));
-        indexingInProgress = true;
-        StopWatch timer = new StopWatch();
-        timer.start();
-        try {
-          for (Module module : modules) {
-            debug(() -> log.debug("--> Indexing requested for module " + module.getName()));
-            StopWatch moduleTimer = new StopWatch();
-            moduleTimer.start();
-            try {
-              reindexModule(emptyList(), emptyList(), module);
-            } finally {
-              moduleTimer.stop();
-              debug(() -> log.debug(
-                  "<-- Indexing took " + moduleTimer.toString() + " for module " + module
-                      .getName()));
-            }
-          }
-        } finally {
-          indexingInProgress = false;
-          timer.stop();
-          debug(() -> log
-              .debug("<- Indexing took " + timer.toString() + " for project " + project.getName()));
-        }
-      });
-    });
+    debug(() -> log
+        .debug("Indexing requested for a subset of modules of project " + project.getName()));
+    reindexScheduler.schedule(project, modules);
   }
 
   @Override
@@ -164,46 +153,226 @@ public class SuggestionServiceImpl implements SuggestionService {
   @Override
   public List<SuggestionNode> findMatchedNodesRootTillEnd(Project project, Module module,
                                                           List<String> containerElements) {
-    if (moduleNameToRootSearchIndex.containsKey(module.getName())) {
-      String[] pathSegments =
-          containerElements.stream().flatMap(element -> stream(toSanitizedPathSegments(element)))
-              .toArray(String[]::new);
-      MetadataSuggestionNode searchStartNode =
-          moduleNameToRootSearchIndex.get(module.getName()).get(pathSegments[0]);
-      if (searchStartNode != null) {
-        List<SuggestionNode> matches = modifiableList(searchStartNode);
-        if (pathSegments.length > 1) {
-          return searchStartNode.findDeepestSuggestionNode(module, matches, pathSegments, 1);
-        }
-        return matches;
-      }
+    ModuleSearchIndex searchIndex = moduleNameToSearchIndex.get(module.getName());
+    if (searchIndex != null) {
+      return findMatchesRootToDeepest(module, searchIndex, containerElements);
     }
     return null;
   }
 
+  @Override
+  public ModificationTracker getIndexModificationTracker() {
+    return indexModificationTracker;
+  }
+
   @Override
   public boolean canProvideSuggestions(Project project, Module module) {
-    Trie<String, MetadataSuggestionNode> rootSearchIndex =
-        moduleNameToRootSearchIndex.get(module.getName());
-    System.out.println("canProvideSuggestions : "+ module.getName() +" -- "+ (rootSearchIndex != null && rootSearchIndex.size() != 0));
-    return rootSearchIndex != null && rootSearchIndex.size() != 0;
+    ModuleSearchIndex searchIndex = moduleNameToSearchIndex.get(module.getName());
+    return searchIndex != null && !searchIndex.isEmpty();
   }
 
   @Override
-  public List<LookupElementBuilder> findSuggestionsForQueryPrefix(Project project, Module module,
-      FileType fileType, PsiElement element, @Nullable List<String> ancestralKeys,
-      String queryWithDotDelimitedPrefixes, @Nullable Set<String> siblingsToExclude) {
-    return doFindSuggestionsForQueryPrefix(module,
-        moduleNameToRootSearchIndex.get(module.getName()), fileType, element, ancestralKeys,
-        queryWithDotDelimitedPrefixes, siblingsToExclude);
+  public RankedSuggestions findSuggestionsForQueryPrefix(Project project, Module module,
+      FileType fileType, Editor editor, PsiElement element, @Nullable List<String> ancestralKeys,
+      String queryWithDotDelimitedPrefixes, @Nullable Set<String> siblingsToExclude, int limit,
+      LookupElementConsumer consumer) {
+    // lets work against a single version of the index through out the search, even if the module gets reindexed meanwhile
+    ModuleSearchIndex searchIndex = moduleNameToSearchIndex.get(module.getName());
+    if (searchIndex == null) {
+      return null;
+    }
+    return doFindSuggestionsForQueryPrefix(module, searchIndex, fileType, editor, element,
+        ancestralKeys, queryWithDotDelimitedPrefixes, siblingsToExclude, limit, consumer);
   }
 
-  private List<MetadataContainerInfo> computeNewContainersToProcess(OrderEnumerator orderEnumerator,
+  /**
+   * Project is closed. Lets stop indexing its modules, instead of letting the pool threads run till the end
+   */
+  @Override
+  public void dispose() {
+    reindexScheduler.shutdown();
+    moduleIndexingExecutor.shutdownNow();
+    prewarmer.shutdown();
+  }
+
+  private void reindexInBackground(Project project, @Nullable Set<String> moduleNames,
+      ProgressIndicator indicator) {
+    StopWatch timer = new StopWatch();
+    timer.start();
+    try {
+      debug(() -> log.debug("-> Indexing " + (moduleNames == null ?
+          "all modules" :
+          "modules " + String.join(",", moduleNames)) + " of project " + project.getName()));
+      // OrderEnumerator.orderEntries(project) is returning everything from all modules including root level module(which is called project in gradle terms)
+      // So, we should not be doing anything with this
+
+      Module[] allModules = ModuleManager.getInstance(project).getModules();
+      if (!snapshotRestoreAttempted) {
+        snapshotRestoreAttempted = true;
+        restoreFromSnapshot(allModules, indicator);
+      }
+      Module[] modules = moduleNames == null ?
+          allModules :
+          stream(allModules).filter(module -> moduleNames.contains(module.getName()))
+              .toArray(Module[]::new);
+      reindexModules(modules, indicator);
+    } finally {
+      timer.stop();
+      debug(() -> log.debug("<- Indexing " + (indicator.isCanceled() ? "cancelled after " : "took ")
+          + timer.toString() + " for project " + project.getName()));
+    }
+  }
+
+  /**
+   * Indexes the given modules in parallel & updates the snapshot if anything has changed
+   *
+   * @param modules   modules to index
+   * @param indicator indicator to check for cancellation
+   */
+  private void reindexModules(Module[] modules, ProgressIndicator indicator) {
+    boolean completed = forEachModuleInParallel(modules, indicator, this::reindexModuleTimed);
+    if (!completed) {
+      return;
+    }
+    // lets not hold on to parsed metadata of containers that no module refers to anymore
+    Map<String, Map<String, MetadataContainerInfo>> moduleNameToSeenContainerPathToContainerInfo =
+        new THashMap<>();
+    moduleNameToSearchIndex.forEach(
+        (moduleName, searchIndex) -> moduleNameToSeenContainerPathToContainerInfo
+            .put(moduleName, searchIndex.getSeenContainerPathToContainerInfo()));
+    Set<String> liveContainerRefs = moduleNameToSeenContainerPathToContainerInfo.values().stream()
+        .flatMap(
+            seenContainerPathToContainerInfo -> seenContainerPathToContainerInfo.keySet().stream())
+        .collect(toSet());
+    metadataCache.retainAll(liveContainerRefs);
+    // & probes of archives that are no longer on the classpath of any module
+    archiveProbeCache.retainAll(liveContainerRefs);
+    // & library layers that are no longer used by any module
+    Set<String> liveFingerprints = moduleNameToSearchIndex.values().stream()
+        .map(searchIndex -> searchIndex.getLibraryLayer().getFingerprint()).collect(toSet());
+    fingerprintToLibraryLayer.keySet().retainAll(liveFingerprints);
+
+    MetadataIndexSnapshot snapshot = this.snapshot;
+    boolean snapshotWritten = true;
+    if (snapshot != null && snapshotOutdated) {
+      snapshotOutdated = false;
+      snapshotWritten = snapshot.save(moduleNameToSeenContainerPathToContainerInfo, metadataCache);
+    }
+    // all layers are built & the snapshot holds the library metadata by now. Layers hold their own copies, so the parsed originals need not be kept around anymore
+    if (snapshotWritten) {
+      metadataCache.releaseLibraryMetadata();
+    }
+
+    if (MetadataPrewarmer.isEnabled()) {
+      for (Module module : modules) {
+        ModuleSearchIndex searchIndex = moduleNameToSearchIndex.get(module.getName());
+        if (searchIndex != null && !searchIndex.isEmpty()) {
+          prewarmer.schedule(module.getProject(), module, searchIndex,
+              () -> moduleNameToSearchIndex.get(module.getName()) != searchIndex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the index of all modules that are not yet indexed from the snapshot of an earlier session. Only metadata files that changed since the snapshot was taken need to be parsed by the indexing that follows
+   *
+   * @param modules   modules of the project
+   * @param indicator indicator to check for cancellation
+   */
+  private void restoreFromSnapshot(Module[] modules, ProgressIndicator indicator) {
+    MetadataIndexSnapshot snapshot = this.snapshot;
+    if (snapshot == null) {
+      return;
+    }
+    StopWatch timer = new StopWatch();
+    timer.start();
+    Map<String, List<MetadataContainerInfo>> moduleNameToContainers =
+        snapshot.load(metadataCache);
+    Module[] modulesToRestore = stream(modules).filter(
+        module -> moduleNameToContainers.containsKey(module.getName())
+            && !moduleNameToSearchIndex.containsKey(module.getName())).toArray(Module[]::new);
+    forEachModuleInParallel(modulesToRestore, indicator,
+        module -> restoreModule(module, moduleNameToContainers.get(module.getName())));
+    // everything we just added came from the snapshot itself
+    snapshotOutdated = false;
+    timer.stop();
+    debug(() -> log.debug(
+        "Restored index of " + modulesToRestore.length + " modules from snapshot in " + timer
+            .toString()));
+  }
+
+  /**
+   * Fans out the given action onto {@link #moduleIndexingExecutor}. Each module is processed within its own read action, independent of other modules, & this method returns once all of them are done
+   * <p>
+   * Read actions give way to write actions. As nothing is published till a module is fully indexed, a module whose read action is interrupted is simply processed again from scratch. Each attempt runs with its own child of the given indicator, so that a write action cancels only the attempt it interrupts
+   *
+   * @param modules      modules to process
+   * @param indicator    indicator to check for cancellation, cancelled only when the run is superseded (or) the project is closed
+   * @param moduleAction action to perform on each module
+   * @return false if the wait was interrupted (or) the indicator got cancelled, true otherwise
+   */
+  private boolean forEachModuleInParallel(Module[] modules, ProgressIndicator indicator,
+      Consumer<Module> moduleAction) {
+    List<Future<?>> moduleExecutions = new ArrayList<>(modules.length);
+    for (Module module : modules) {
+      try {
+        moduleExecutions.add(moduleIndexingExecutor.submit(() -> {
+          // write action cancels the attempt it interrupts, not the run
+          while (!indicator.isCanceled() && !ProgressIndicatorUtils
+              .runInReadActionWithWriteActionPriority(() -> moduleAction.accept(module),
+                  new SensitiveProgressWrapper(indicator))) {
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+          }
+        }));
+      } catch (RejectedExecutionException e) {
+        // service is disposed, as the project is being closed
+        return false;
+      }
+    }
+    for (Future<?> moduleExecution : moduleExecutions) {
+      try {
+        moduleExecution.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (CancellationException e) {
+        // service is disposed, as the project is being closed
+        return false;
+      } catch (ExecutionException e) {
+        log.error("Exception encountered while indexing module", e.getCause());
+      }
+    }
+    return !indicator.isCanceled();
+  }
+
+  private void reindexModuleTimed(Module module) {
+    if (module.isDisposed()) {
+      return;
+    }
+    debug(() -> log.debug("--> Indexing requested for module " + module.getName()));
+    StopWatch moduleTimer = new StopWatch();
+    moduleTimer.start();
+    try {
+      reindexModule(emptyList(), emptyList(), module);
+    } finally {
+      moduleTimer.stop();
+      debug(() -> log.debug(
+          "<-- Indexing took " + moduleTimer.toString() + " for module " + module.getName()));
+    }
+  }
+
+  private List<MetadataContainerInfo> computeNewContainersToProcess(
+      Collection<VirtualFile> metadataFileContainers,
       Map<String, MetadataContainerInfo> seenContainerPathToContainerInfo) {
     List<MetadataContainerInfo> containersToProcess = new ArrayList<>();
-    for (VirtualFile metadataFileContainer : orderEnumerator.recursively().classes().getRoots()) {
+    for (VirtualFile metadataFileContainer : metadataFileContainers) {
+      ProgressManager.checkCanceled();
+      if (!metadataFileContainer.isValid()) {
+        continue;
+      }
       Collection<MetadataContainerInfo> metadataContainerInfos =
-          MetadataContainerInfo.newInstances(metadataFileContainer);
+          MetadataContainerInfo.newInstances(metadataFileContainer, archiveProbeCache);
       for (MetadataContainerInfo metadataContainerInfo : metadataContainerInfos) {
         boolean seenBefore = seenContainerPathToContainerInfo
             .containsKey(metadataContainerInfo.getContainerArchiveOrFileRef());
@@ -238,405 +407,512 @@ public class SuggestionServiceImpl implements SuggestionService {
     return containersToProcess;
   }
 
-  private List<LookupElementBuilder> doFindSuggestionsForQueryPrefix(Module module,
-      Trie<String, MetadataSuggestionNode> rootSearchIndex, FileType fileType, PsiElement element,
+  private RankedSuggestions doFindSuggestionsForQueryPrefix(Module module,
+      ModuleSearchIndex searchIndex, FileType fileType, Editor editor, PsiElement element,
       @Nullable List<String> ancestralKeys, String queryWithDotDelimitedPrefixes,
-      @Nullable Set<String> siblingsToExclude) {
+      @Nullable Set<String> siblingsToExclude, int limit, LookupElementConsumer consumer) {
     debug(() -> log.debug("Search requested for " + queryWithDotDelimitedPrefixes));
     StopWatch timer = new StopWatch();
     timer.start();
     try {
-      String[] querySegmentPrefixes = toSanitizedPathSegments(queryWithDotDelimitedPrefixes);
-      Set<Suggestion> suggestions = null;
+      String[] querySegmentPrefixes = toSanitisedPathSegments(queryWithDotDelimitedPrefixes);
+      CompletionSession session = CompletionSession
+          .find(editor, module.getName(), searchIndex, fileType, ancestralKeys, siblingsToExclude);
+      RankedSuggestions suggestions = null;
+      CompletionSession nextSession = null;
       if (ancestralKeys != null) {
-        String[] ancestralKeySegments =
-            ancestralKeys.stream().flatMap(key -> stream(toRawPathSegments(key)))
-                .toArray(String[]::new);
-        MetadataSuggestionNode rootNode = rootSearchIndex.get(sanitise(ancestralKeySegments[0]));
-        if (rootNode != null) {
-          List<SuggestionNode> matchesRootToDeepest;
-          SuggestionNode startSearchFrom = null;
-          if (ancestralKeySegments.length > 1) {
-            String[] sanitisedAncestralPathSegments =
-                stream(ancestralKeySegments).map(SuggestionNode::sanitise).toArray(String[]::new);
-            matchesRootToDeepest = rootNode
-                .findDeepestSuggestionNode(module, modifiableList(rootNode),
-                    sanitisedAncestralPathSegments, 1);
-            if (matchesRootToDeepest != null && matchesRootToDeepest.size() != 0) {
-              startSearchFrom = matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
-            }
+        List<SuggestionNode> matchesRootToDeepest = session != null ?
+            session.getMatchesRootToDeepest() :
+            findMatchesRootToDeepest(module, searchIndex, ancestralKeys);
+        if (matchesRootToDeepest != null && matchesRootToDeepest.size() != 0) {
+          SuggestionNode startSearchFrom =
+              matchesRootToDeepest.get(matchesRootToDeepest.size() - 1);
+          // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
+          if (startSearchFrom.isLeaf(module)) {
+            String valuePrefix = sanitise(truncateIdeaDummyIdentifier(element.getText()));
+            querySegmentPrefixes = new String[] {valuePrefix};
+            suggestions = new RankedSuggestions(querySegmentPrefixes, limit, consumer);
+            suggestions.addAll(startSearchFrom.findValueSuggestionsForPrefix(module, fileType,
+                matchesRootToDeepest, valuePrefix, siblingsToExclude));
           } else {
-            startSearchFrom = rootNode;
-            matchesRootToDeepest = singletonList(rootNode);
-          }
-
-          if (startSearchFrom != null) {
-            // if search start node is a leaf, this means, the user is looking for values for the given key, lets find the suggestions for values
-            if (startSearchFrom.isLeaf(module)) {
-              suggestions = startSearchFrom.findValueSuggestionsForPrefix(module, fileType,
-                  unmodifiableList(matchesRootToDeepest),
-                  sanitise(truncateIdeaDummyIdentifier(element.getText())), siblingsToExclude);
-            } else {
-              suggestions = startSearchFrom.findKeySuggestionsForQueryPrefix(module, fileType,
-                  unmodifiableList(matchesRootToDeepest), matchesRootToDeepest.size(),
-                  querySegmentPrefixes, 0, siblingsToExclude);
-            }
+            suggestions = new RankedSuggestions(querySegmentPrefixes, limit, consumer);
+            // walk below the ancestral matches cannot be resumed, see CompletionSession
+            startSearchFrom.collectKeySuggestionsForQueryPrefix(module, fileType,
+                matchesRootToDeepest, matchesRootToDeepest.size(), querySegmentPrefixes, 0,
+                siblingsToExclude, suggestions);
           }
+          nextSession = new CompletionSession(module.getName(), searchIndex, fileType,
+              ancestralKeys, siblingsToExclude, matchesRootToDeepest, querySegmentPrefixes, null,
+              false);
         }
       } else {
-        String rootQuerySegmentPrefix = querySegmentPrefixes[0];
-        SortedMap<String, MetadataSuggestionNode> topLevelQueryResults =
-            rootSearchIndex.prefixMap(rootQuerySegmentPrefix);
-
-        Collection<MetadataSuggestionNode> childNodes;
-        int querySegmentPrefixStartIndex;
+        suggestions = new RankedSuggestions(querySegmentPrefixes, limit, consumer);
+        nextSession =
+            findSuggestionsNotUnderAnyKey(module, searchIndex, fileType, querySegmentPrefixes,
+                siblingsToExclude, session, suggestions);
+      }
 
-        // If no results are found at the top level, let dive deeper and find matches
-        if (topLevelQueryResults == null || topLevelQueryResults.size() == 0) {
-          childNodes = rootSearchIndex.values();
-          querySegmentPrefixStartIndex = 0;
-        } else {
-          childNodes = topLevelQueryResults.values();
-          querySegmentPrefixStartIndex = 1;
+      if (suggestions != null && !suggestions.isEmpty()) {
+        suggestions.finish();
+        // search that was stopped midway has not visited all the nodes, so it cannot be resumed
+        if (!suggestions.isStopped()) {
+          nextSession.attachTo(editor);
         }
+        return suggestions;
+      }
+      return null;
+    } finally {
+      timer.stop();
+      debug(() -> log.debug("Search took " + timer.toString()));
+    }
+  }
 
+  /**
+   * Finds suggestions for a query that is not under any key. Roots are searched first & if none of them match the first segment of the query, nodes below the roots are searched instead.
+   * If the session was left behind by a search for a query the given one extends, search is resumed from the nodes that matched the earlier query, as none of the rest can match its extension either
+   *
+   * @param session     session left behind by the earlier search, if any
+   * @param suggestions collects the matches
+   * @return session the search for an extension of the query can be resumed from
+   */
+  CompletionSession findSuggestionsNotUnderAnyKey(Module module, ModuleSearchIndex searchIndex,
+      FileType fileType, String[] querySegmentPrefixes, @Nullable Set<String> siblingsToExclude,
+      @Nullable CompletionSession session, RankedSuggestions suggestions) {
+    String rootQuerySegmentPrefix = querySegmentPrefixes[0];
+    List<List<SuggestionNode>> pathsToResumeFrom = null;
+    boolean belowRoots = false;
+    if (session != null && session.canResumeFor(querySegmentPrefixes)) {
+      assert session.getPathsToResumeFrom() != null;
+      List<List<SuggestionNode>> pathsToSearchAgainst = session.getPathsToResumeFrom().stream()
+          .filter(path -> nameOfLast(path).startsWith(rootQuerySegmentPrefix)).collect(toList());
+      belowRoots = session.isBelowRoots();
+      // once the first segment is extended past all the roots that matched earlier, a fresh search might have to dive below the roots
+      if (belowRoots || !pathsToSearchAgainst.isEmpty()) {
+        pathsToResumeFrom = findSuggestionsBelow(module, fileType, pathsToSearchAgainst,
+            querySegmentPrefixes, suggestions);
+        debug(() -> log.debug("Resumed search of " + String.join(".", querySegmentPrefixes)
+            + " from " + pathsToSearchAgainst.size() + " of the " + session
+            .getPathsToResumeFrom().size() + " nodes matched by " + String
+            .join(".", session.getQuerySegmentPrefixes())));
+      }
+    }
+
+    if (pathsToResumeFrom == null) {
+      Collection<MetadataSuggestionNode> topLevelQueryResults =
+          searchIndex.findRootsWithPrefix(rootQuerySegmentPrefix);
+      // If no results are found at the top level, let dive deeper and find matches
+      belowRoots = topLevelQueryResults.isEmpty();
+      if (belowRoots) {
+        pathsToResumeFrom = findSuggestionsBelow(module, fileType,
+            findPathsBelowRootsToSearchAgainst(searchIndex, rootQuerySegmentPrefix,
+                siblingsToExclude), querySegmentPrefixes, suggestions);
+      } else {
         Collection<MetadataSuggestionNode> nodesToSearchAgainst;
         if (siblingsToExclude != null) {
           Set<MetadataSuggestionNode> nodesToExclude = siblingsToExclude.stream()
-              .flatMap(exclude -> rootSearchIndex.prefixMap(exclude).values().stream())
+              .flatMap(exclude -> searchIndex.findRootsWithPrefix(exclude).stream())
               .collect(toSet());
-          nodesToSearchAgainst =
-              childNodes.stream().filter(node -> !nodesToExclude.contains(node)).collect(toList());
+          nodesToSearchAgainst = topLevelQueryResults.stream()
+              .filter(node -> !nodesToExclude.contains(node)).collect(toList());
         } else {
-          nodesToSearchAgainst = childNodes;
+          nodesToSearchAgainst = topLevelQueryResults;
         }
-
-        suggestions = doFindSuggestionsForQueryPrefix(module, fileType, nodesToSearchAgainst,
-            querySegmentPrefixes, querySegmentPrefixStartIndex);
+        pathsToResumeFrom = findSuggestionsBelow(module, fileType,
+            nodesToSearchAgainst.stream().map(PathList::<SuggestionNode>of).collect(toList()),
+            querySegmentPrefixes, suggestions);
       }
+    }
+    return new CompletionSession(module.getName(), searchIndex, fileType, null, siblingsToExclude,
+        null, querySegmentPrefixes, pathsToResumeFrom, belowRoots);
+  }
 
-      if (suggestions != null) {
-        return toLookupElementBuilders(suggestions);
-      }
+  /**
+   * @return nodes matching the ancestral keys, root first. Null if the first key does not match any root
+   */
+  @Nullable
+  private List<SuggestionNode> findMatchesRootToDeepest(Module module,
+      ModuleSearchIndex searchIndex, List<String> ancestralKeys) {
+    String[] ancestralPathSegments =
+        ancestralKeys.stream().flatMap(key -> stream(toSanitisedPathSegments(key)))
+            .toArray(String[]::new);
+    MetadataSuggestionNode rootNode = searchIndex.findRoot(ancestralPathSegments[0]);
+    if (rootNode == null) {
       return null;
-    } finally {
-      timer.stop();
-      debug(() -> log.debug("Search took " + timer.toString()));
     }
+    if (ancestralPathSegments.length > 1) {
+      return rootNode
+          .findDeepestSuggestionNode(module, PathList.of(rootNode), ancestralPathSegments, 1);
+    }
+    return PathList.of(rootNode);
   }
 
-  @Nullable
-  private Set<Suggestion> doFindSuggestionsForQueryPrefix(Module module, FileType fileType,
-      Collection<MetadataSuggestionNode> nodesToSearchWithin, String[] querySegmentPrefixes,
-      int querySegmentPrefixStartIndex) {
-    Set<Suggestion> suggestions = null;
-    for (MetadataSuggestionNode suggestionNode : nodesToSearchWithin) {
-      Set<Suggestion> matchedSuggestions = suggestionNode
-          .findKeySuggestionsForQueryPrefix(module, fileType, modifiableList(suggestionNode), 0,
-              querySegmentPrefixes, querySegmentPrefixStartIndex);
-      if (matchedSuggestions != null) {
-        if (suggestions == null) {
-          suggestions = new THashSet<>();
-        }
-        suggestions.addAll(matchedSuggestions);
-      }
+  /**
+   * @return paths from the root to the nodes below the roots (at any depth) whose name starts with the given prefix, shallowest first. Nodes under the excluded siblings are left out
+   */
+  private List<List<SuggestionNode>> findPathsBelowRootsToSearchAgainst(
+      ModuleSearchIndex searchIndex, String rootQuerySegmentPrefix,
+      @Nullable Set<String> siblingsToExclude) {
+    List<List<SuggestionNode>> paths =
+        searchIndex.findPathsBelowRootsWithPrefix(rootQuerySegmentPrefix);
+    if (siblingsToExclude == null) {
+      return paths;
     }
-    return suggestions;
+    Set<SuggestionNode> rootsToExclude = newSetFromMap(new IdentityHashMap<>());
+    siblingsToExclude
+        .forEach(exclude -> rootsToExclude.addAll(searchIndex.findRootsWithPrefix(exclude)));
+    return paths.stream().filter(path -> !rootsToExclude.contains(path.get(0)))
+        .collect(toList());
   }
 
-  @Nullable
-  private List<LookupElementBuilder> toLookupElementBuilders(
-      @Nullable Set<Suggestion> suggestions) {
-    if (suggestions != null) {
-      return suggestions.stream().map(Suggestion::newLookupElement).collect(toList());
+  /**
+   * Matches the rest of the query (from the second segment onwards) below each of the nodes whose name starts with the first segment. Serves both the roots & the nodes below the roots that are picked up from the segment index (when the first segment does not match any of the roots), instead of walking all the trees.
+   * Like the walk, a node is not considered if one of its ancestors has already matched the query
+   *
+   * @param pathsToSearchAgainst paths from the root to the nodes whose name starts with the first segment, shallowest first
+   * @return paths to the nodes that matched & the ones that were skipped as an ancestor matched (an extension of the query might not match the ancestor, but the node itself)
+   */
+  private List<List<SuggestionNode>> findSuggestionsBelow(Module module, FileType fileType,
+      List<List<SuggestionNode>> pathsToSearchAgainst, String[] querySegmentPrefixes,
+      RankedSuggestions suggestions) {
+    Set<SuggestionNode> matchedNodes = newSetFromMap(new IdentityHashMap<>());
+    List<List<SuggestionNode>> pathsToResumeFrom = new ArrayList<>();
+    for (List<SuggestionNode> matchesRootTillNode : pathsToSearchAgainst) {
+      ProgressManager.checkCanceled();
+      if (suggestions.isStopped()) {
+        break;
+      }
+      SuggestionNode node = matchesRootTillNode.get(matchesRootTillNode.size() - 1);
+      if (matchesRootTillNode.stream().anyMatch(matchedNodes::contains)) {
+        pathsToResumeFrom.add(matchesRootTillNode);
+      } else if (node.collectKeySuggestionsForQueryPrefix(module, fileType, matchesRootTillNode, 0,
+          querySegmentPrefixes, 1, null, suggestions)) {
+        matchedNodes.add(node);
+        pathsToResumeFrom.add(matchesRootTillNode);
+      }
     }
-    return null;
+    return pathsToResumeFrom;
+  }
+
+  /**
+   * @return sanitised name of the last node of the path. Paths the search resumes from are made of metadata nodes alone
+   */
+  private static String nameOfLast(List<SuggestionNode> path) {
+    return ((MetadataSuggestionNode) path.get(path.size() - 1)).getName();
   }
 
   /**
    * Finds the containers that are not reachable from current classpath
    *
-   * @param orderEnumerator                  classpath roots to work with
+   * @param scan                             classpath roots to work with
    * @param seenContainerPathToContainerInfo seen container paths
    * @return list of container paths that are no longer valid
    */
-  private List<MetadataContainerInfo> computeContainersToRemove(OrderEnumerator orderEnumerator,
+  private List<MetadataContainerInfo> computeContainersToRemove(ContainerScan scan,
       Map<String, MetadataContainerInfo> seenContainerPathToContainerInfo) {
-    Set<String> newContainerPaths = stream(orderEnumerator.recursively().classes().getRoots())
-        .flatMap(MetadataContainerInfo::getContainerArchiveOrFileRefs).collect(toSet());
-    Set<String> knownContainerPathSet = new THashSet<>(seenContainerPathToContainerInfo.keySet());
+    Set<String> newContainerPaths =
+        scan.getRootsToScan().stream().filter(VirtualFile::isValid)
+            .flatMap(MetadataContainerInfo::getContainerArchiveOrFileRefs).collect(toSet());
+    // when only a few roots are scanned, only the containers that belong to these roots can be judged
+    Set<String> knownContainerPathSet =
+        seenContainerPathToContainerInfo.keySet().stream().filter(scan::covers)
+            .collect(toCollection(THashSet::new));
     knownContainerPathSet.removeAll(newContainerPaths);
     return knownContainerPathSet.stream().map(seenContainerPathToContainerInfo::get)
         .collect(toList());
   }
 
-  private void processContainers(Module module, List<MetadataContainerInfo> containersToProcess,
-      List<MetadataContainerInfo> containersToRemove,
-      Map<String, MetadataContainerInfo> seenContainerPathToContainerInfo,
-      Trie<String, MetadataSuggestionNode> rootSearchIndex) {
-    // Lets remove references to files that are no longer present in classpath
-    containersToRemove.forEach(
-        container -> removeReferences(seenContainerPathToContainerInfo, rootSearchIndex,
-            container));
-
-    for (MetadataContainerInfo metadataContainerInfo : containersToProcess) {
-      // lets remove existing references from search index, as these files are modified, so that we can rebuild index
-      if (seenContainerPathToContainerInfo
-          .containsKey(metadataContainerInfo.getContainerArchiveOrFileRef())) {
-        removeReferences(seenContainerPathToContainerInfo, rootSearchIndex, metadataContainerInfo);
-      }
-
-      String metadataFilePath = metadataContainerInfo.getFileUrl();
-      try (InputStream inputStream = metadataContainerInfo.getMetadataFile().getInputStream()) {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        // register custom mapper adapters
-        gsonBuilder.registerTypeAdapter(SpringConfigurationMetadataValueProviderType.class,
-            new SpringConfigurationMetadataValueProviderTypeDeserializer());
-        gsonBuilder.registerTypeAdapterFactory(new GsonPostProcessEnablingTypeFactory());
-        SpringConfigurationMetadata springConfigurationMetadata = gsonBuilder.create()
-            .fromJson(new BufferedReader(new InputStreamReader(inputStream)),
-                SpringConfigurationMetadata.class);
-        buildMetadataHierarchy(module, rootSearchIndex, metadataContainerInfo,
-            springConfigurationMetadata);
-
-        seenContainerPathToContainerInfo
-            .put(metadataContainerInfo.getContainerArchiveOrFileRef(), metadataContainerInfo);
-      } catch (IOException e) {
-        log.error("Exception encountered while processing metadata file: " + metadataFilePath, e);
-        removeReferences(seenContainerPathToContainerInfo, rootSearchIndex, metadataContainerInfo);
-      }
+  private void restoreModule(Module module, List<MetadataContainerInfo> containers) {
+    if (module.isDisposed()) {
+      return;
     }
+    Map<String, MetadataContainerInfo> moduleSeenContainerPathToSeenContainerInfo =
+        new THashMap<>();
+    containers.forEach(container -> moduleSeenContainerPathToSeenContainerInfo
+        .put(container.getContainerArchiveOrFileRef(), container));
+    moduleNameToSearchIndex.putIfAbsent(module.getName(),
+        buildSearchIndex(module, ModuleSearchIndex.EMPTY,
+            moduleSeenContainerPathToSeenContainerInfo));
+    indexModificationTracker.incModificationCount();
   }
 
   private void reindexModule(List<MetadataContainerInfo> newProjectSourcesToProcess,
       List<MetadataContainerInfo> projectContainersToRemove, Module module) {
-    Map<String, MetadataContainerInfo> moduleSeenContainerPathToSeenContainerInfo =
-        moduleNameToSeenContainerPathToContainerInfo
-            .computeIfAbsent(module.getName(), k -> new THashMap<>());
-
-    Trie<String, MetadataSuggestionNode> moduleRootSearchIndex =
-        moduleNameToRootSearchIndex.get(module.getName());
-    if (moduleRootSearchIndex == null) {
-      moduleRootSearchIndex = new PatriciaTrie<>();
-      moduleNameToRootSearchIndex.put(module.getName(), moduleRootSearchIndex);
+    ModuleSearchIndex currentSearchIndex = moduleNameToSearchIndex.get(module.getName());
+    boolean indexedBefore = currentSearchIndex != null;
+    if (!indexedBefore) {
+      currentSearchIndex = ModuleSearchIndex.EMPTY;
     }
 
-    OrderEnumerator moduleOrderEnumerator = OrderEnumerator.orderEntries(module);
+    ContainerScan scan = changeTracker.beginScan(module);
+    if (scan.isUpToDate() && indexedBefore && newProjectSourcesToProcess.isEmpty()
+        && projectContainersToRemove.isEmpty()) {
+      debug(() -> log.debug("None of the classpath roots changed for module " + module.getName()));
+      return;
+    }
 
+    // Next version of the index is built on the side & is only made visible to searches once it is fully built. Searches that are in flight continue to use the current version
+    Map<String, MetadataContainerInfo> moduleSeenContainerPathToSeenContainerInfo =
+        currentSearchIndex.copySeenContainers();
     List<MetadataContainerInfo> newModuleContainersToProcess =
-        computeNewContainersToProcess(moduleOrderEnumerator,
+        computeNewContainersToProcess(scan.getRootsToScan(),
             moduleSeenContainerPathToSeenContainerInfo);
     newModuleContainersToProcess.addAll(newProjectSourcesToProcess);
+    newProjectSourcesToProcess.forEach(container -> moduleSeenContainerPathToSeenContainerInfo
+        .put(container.getContainerArchiveOrFileRef(), container));
 
     List<MetadataContainerInfo> moduleContainersToRemove =
-        computeContainersToRemove(moduleOrderEnumerator,
-            moduleSeenContainerPathToSeenContainerInfo);
+        computeContainersToRemove(scan, moduleSeenContainerPathToSeenContainerInfo);
     moduleContainersToRemove.addAll(projectContainersToRemove);
-
-    processContainers(module, newModuleContainersToProcess, moduleContainersToRemove,
-        moduleSeenContainerPathToSeenContainerInfo, moduleRootSearchIndex);
-  }
-
-  private void buildMetadataHierarchy(Module module,
-      Trie<String, MetadataSuggestionNode> rootSearchIndex,
-      MetadataContainerInfo metadataContainerInfo,
-      SpringConfigurationMetadata springConfigurationMetadata) {
-    debug(() -> log.debug("Adding container to index " + metadataContainerInfo));
-    String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
-    addGroupsToIndex(module, rootSearchIndex, springConfigurationMetadata, containerPath);
-    addPropertiesToIndex(module, rootSearchIndex, springConfigurationMetadata, containerPath);
-    addHintsToIndex(module, rootSearchIndex, springConfigurationMetadata, containerPath);
-    debug(() -> log.debug("Done adding container to index"));
+    moduleContainersToRemove.forEach(container -> moduleSeenContainerPathToSeenContainerInfo
+        .remove(container.getContainerArchiveOrFileRef()));
+
+    ModuleSearchIndex newSearchIndex;
+    if (newModuleContainersToProcess.isEmpty() && moduleContainersToRemove.isEmpty()) {
+      // search tree is unaffected, only the containers without metadata might have changed. So, the current layers can be shared with the next version
+      newSearchIndex = new ModuleSearchIndex(currentSearchIndex.getLibraryLayer(),
+          currentSearchIndex.getOverlayRoots(), moduleSeenContainerPathToSeenContainerInfo);
+    } else {
+      newSearchIndex =
+          buildSearchIndex(module, currentSearchIndex, moduleSeenContainerPathToSeenContainerInfo);
+    }
+    moduleNameToSearchIndex.put(module.getName(), newSearchIndex);
+    indexModificationTracker.incModificationCount();
+    changeTracker.scanCompleted(module, scan);
   }
 
-  private void addHintsToIndex(Module module, Trie<String, MetadataSuggestionNode> rootSearchIndex,
-                               SpringConfigurationMetadata springConfigurationMetadata, String containerPath) {
-    List<SpringConfigurationMetadataHint> hints = springConfigurationMetadata.getHints();
-    if (hints != null) {
-      hints.sort(comparing(SpringConfigurationMetadataHint::getName));
-      for (SpringConfigurationMetadataHint hint : hints) {
-        String[] pathSegments = toSanitizedPathSegments(hint.getExpectedPropertyName());
-        MetadataSuggestionNode closestMetadata =
-            findDeepestMetadataMatch(rootSearchIndex, pathSegments, true);
-        if (closestMetadata != null) {
-          if (!closestMetadata.isProperty()) {
-            log.warn(
-                "Unexpected hint " + hint.getName() + " is assigned to  group " + closestMetadata
-                    .getPathFromRoot(module)
-                    + " found. Hints can be only assigned to property. Ignoring the hint completely.Existing group belongs to ("
-                    + closestMetadata.getBelongsTo().stream().collect(joining(","))
-                    + "), New hint belongs " + containerPath);
-          } else {
-            MetadataPropertySuggestionNode propertySuggestionNode =
-                MetadataPropertySuggestionNode.class.cast(closestMetadata);
-            if (hint.representsValueOfMap()) {
-              propertySuggestionNode.getProperty().setValueHint(hint);
-            } else {
-              propertySuggestionNode.getProperty().setGenericOrKeyHint(hint);
-            }
-          }
+  /**
+   * Builds index of the module from all the containers seen by the module. Library layer is picked up from the layers already built for other modules whenever possible & the overlay is rebuilt from scratch, as it is usually made of just a handful of small metadata files
+   *
+   * @param module                                     module to index
+   * @param currentSearchIndex                         index that is currently published for the module
+   * @param moduleSeenContainerPathToSeenContainerInfo containers seen by the module. Containers that could not be processed are removed, so that they are attempted again on next reindex
+   * @return new index
+   */
+  private ModuleSearchIndex buildSearchIndex(Module module, ModuleSearchIndex currentSearchIndex,
+      Map<String, MetadataContainerInfo> moduleSeenContainerPathToSeenContainerInfo) {
+    snapshotOutdated = true;
+    List<MetadataContainerInfo> libraryContainers = new ArrayList<>();
+    List<MetadataContainerInfo> moduleContainers = new ArrayList<>();
+    for (MetadataContainerInfo containerInfo : moduleSeenContainerPathToSeenContainerInfo
+        .values()) {
+      if (containerInfo.containsMetadataFile()) {
+        if (containerInfo.isArchive()) {
+          libraryContainers.add(containerInfo);
+        } else {
+          moduleContainers.add(containerInfo);
         }
       }
     }
+    libraryContainers.sort(comparing(MetadataContainerInfo::getContainerArchiveOrFileRef));
+    moduleContainers.sort(comparing(MetadataContainerInfo::getContainerArchiveOrFileRef));
+
+    LibraryLayer libraryLayer =
+        getOrBuildLibraryLayer(module, libraryContainers, currentSearchIndex.getLibraryLayer());
+    libraryContainers.stream().map(MetadataContainerInfo::getContainerArchiveOrFileRef)
+        .filter(containerPath -> !libraryLayer.getContainerPathToContainerInfo()
+            .containsKey(containerPath))
+        .forEach(moduleSeenContainerPathToSeenContainerInfo::remove);
+
+    Trie<String, MetadataSuggestionNode> overlayRoots = new PatriciaTrie<>();
+    ContainerNodeIndex overlayNodeIndex = new ContainerNodeIndex();
+    for (MetadataContainerInfo metadataContainerInfo : moduleContainers) {
+      ProgressManager.checkCanceled();
+      try {
+        SpringConfigurationMetadata springConfigurationMetadata =
+            metadataCache.getOrParse(metadataContainerInfo);
+        copyOverlappingLibraryPaths(overlayRoots, libraryLayer.getRoots(),
+            springConfigurationMetadata);
+        buildMetadataHierarchy(module, overlayRoots, overlayNodeIndex, metadataContainerInfo,
+            springConfigurationMetadata);
+      } catch (IOException e) {
+        log.error("Exception encountered while processing metadata file: " + metadataContainerInfo
+            .getFileUrl(), e);
+        removeReferences(overlayRoots, overlayNodeIndex, metadataContainerInfo);
+        moduleSeenContainerPathToSeenContainerInfo
+            .remove(metadataContainerInfo.getContainerArchiveOrFileRef());
+      }
+    }
+    return new ModuleSearchIndex(libraryLayer, overlayRoots,
+        moduleSeenContainerPathToSeenContainerInfo);
   }
 
-  private void addPropertiesToIndex(Module module,
-      Trie<String, MetadataSuggestionNode> rootSearchIndex,
-      SpringConfigurationMetadata springConfigurationMetadata, String containerArchiveOrFileRef) {
-    List<SpringConfigurationMetadataProperty> properties =
-        springConfigurationMetadata.getProperties();
-    properties.sort(comparing(SpringConfigurationMetadataProperty::getName));
-    for (SpringConfigurationMetadataProperty property : properties) {
-      String[] pathSegments = toSanitizedPathSegments(property.getName());
-      String[] rawPathSegments = toRawPathSegments(property.getName());
-      MetadataSuggestionNode closestMetadata =
-          findDeepestMetadataMatch(rootSearchIndex, pathSegments, false);
-
-      int startIndex;
-      if (closestMetadata == null) { // path does not have a corresponding root element
-        boolean onlyRootSegmentExists = pathSegments.length == 1;
-        if (onlyRootSegmentExists) {
-          closestMetadata = MetadataPropertySuggestionNode
-              .newInstance(rawPathSegments[0], property, null, containerArchiveOrFileRef);
-        } else {
-          closestMetadata = MetadataNonPropertySuggestionNode
-              .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
-        }
-        rootSearchIndex.put(pathSegments[0], closestMetadata);
+  /**
+   * @param module            module that needs the layer
+   * @param libraryContainers library containers of the module, sorted by container reference
+   * @param currentLayer      layer the module currently uses, used as the base for building the new layer if no other module has built it yet
+   * @return layer shared by all modules with the same library containers
+   */
+  private LibraryLayer getOrBuildLibraryLayer(Module module,
+      List<MetadataContainerInfo> libraryContainers, LibraryLayer currentLayer) {
+    if (libraryContainers.isEmpty()) {
+      return LibraryLayer.EMPTY;
+    }
+    String fingerprint = LibraryLayer.fingerprintOf(libraryContainers);
+    LibraryLayerHolder holder =
+        fingerprintToLibraryLayer.computeIfAbsent(fingerprint, k -> new LibraryLayerHolder());
+    LibraryLayer libraryLayer;
+    try {
+      libraryLayer = holder.getOrBuild(
+          () -> deriveLibraryLayer(module, fingerprint, libraryContainers, currentLayer));
+    } catch (RuntimeException e) {
+      // build was cancelled (or) failed, lets let the next attempt build it again
+      fingerprintToLibraryLayer.remove(fingerprint, holder);
+      throw e;
+    }
+    if (libraryLayer.getContainerPathToContainerInfo().size() != libraryContainers.size()) {
+      // lets not share a layer with failures, so that the failed containers are attempted again on next reindex
+      fingerprintToLibraryLayer.remove(fingerprint, holder);
+    }
+    return libraryLayer;
+  }
 
-        // since we already handled the root level item, let addChildren start from index 1 of pathSegments
-        startIndex = 1;
-      } else {
-        startIndex = closestMetadata.numOfHopesToRoot() + 1;
+  /**
+   * Builds a new library layer by removing containers that are gone/modified from the base layer & adding the ones that are new, instead of processing all library containers again.
+   * Base layer is left untouched, as the new layer copies only the base nodes along the paths of the containers it removes/adds & shares the rest of the tree with the base layer
+   */
+  private LibraryLayer deriveLibraryLayer(Module module, String fingerprint,
+      List<MetadataContainerInfo> libraryContainers, LibraryLayer baseLayer) {
+    debug(() -> log.debug("Building library layer for module " + module.getName()));
+    Map<String, MetadataContainerInfo> baseContainerPathToContainerInfo =
+        baseLayer.getContainerPathToContainerInfo();
+    Map<String, MetadataContainerInfo> containerPathToContainerInfo = new THashMap<>();
+    libraryContainers.forEach(containerInfo -> containerPathToContainerInfo
+        .put(containerInfo.getContainerArchiveOrFileRef(), containerInfo));
+
+    Trie<String, MetadataSuggestionNode> baseRoots = baseLayer.getRoots();
+    Trie<String, MetadataSuggestionNode> roots = new PatriciaTrie<>(baseRoots);
+    ContainerNodeIndex nodeIndex = new ContainerNodeIndex(baseLayer.getContainerNodeIndex());
+    baseContainerPathToContainerInfo.forEach((containerPath, baseContainerInfo) -> {
+      MetadataContainerInfo containerInfo = containerPathToContainerInfo.get(containerPath);
+      if (containerInfo == null || containerInfo.isModified(baseContainerInfo)) {
+        nodeIndex.getNodePaths(containerIds.idOf(containerPath))
+            .forEach(pathSegments -> copySharedBasePath(roots, baseRoots, pathSegments));
+        removeReferences(roots, nodeIndex, baseContainerInfo);
       }
+    });
 
-      boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
+    for (MetadataContainerInfo metadataContainerInfo : libraryContainers) {
+      MetadataContainerInfo baseContainerInfo = baseContainerPathToContainerInfo
+          .get(metadataContainerInfo.getContainerArchiveOrFileRef());
+      if (baseContainerInfo != null && !metadataContainerInfo.isModified(baseContainerInfo)) {
+        continue;
+      }
+      ProgressManager.checkCanceled();
+      try {
+        SpringConfigurationMetadata springConfigurationMetadata =
+            metadataCache.getOrParse(metadataContainerInfo);
+        forEachPathOf(springConfigurationMetadata,
+            pathSegments -> copySharedBasePath(roots, baseRoots, pathSegments));
+        buildMetadataHierarchy(module, roots, nodeIndex, metadataContainerInfo,
+            springConfigurationMetadata);
+      } catch (IOException e) {
+        log.error("Exception encountered while processing metadata file: " + metadataContainerInfo
+            .getFileUrl(), e);
+        removeReferences(roots, nodeIndex, metadataContainerInfo);
+        containerPathToContainerInfo.remove(metadataContainerInfo.getContainerArchiveOrFileRef());
+      }
+    }
+    return new LibraryLayer(fingerprint, roots, nodeIndex, containerPathToContainerInfo);
+  }
 
-      if (haveMoreSegmentsLeft) {
-        if (!closestMetadata.isProperty()) {
-          MetadataNonPropertySuggestionNode.class.cast(closestMetadata)
-              .addChildren(property, rawPathSegments, startIndex, containerArchiveOrFileRef);
-        } else {
-          log.warn("Detected conflict between a new group & existing property for suggestion path "
-              + closestMetadata.getPathFromRoot(module)
-              + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
-              .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
-              + containerArchiveOrFileRef);
-        }
-      } else {
-        if (!closestMetadata.isProperty()) {
-          log.warn(
-              "Detected conflict between a new metadata property & existing non property node for suggestion path "
-                  + closestMetadata.getPathFromRoot(module)
-                  + ". Ignoring property. Existing non property node belongs to (" + closestMetadata
-                  .getBelongsTo().stream().collect(joining(",")) + "), New property belongs to "
-                  + containerArchiveOrFileRef);
-        } else {
-          closestMetadata.addRefCascadeTillRoot(containerArchiveOrFileRef);
-          log.debug("Detected a duplicate metadata property for suggestion path " + closestMetadata
-              .getPathFromRoot(module) + ". Ignoring property. Existing property belongs to ("
-              + closestMetadata.getBelongsTo().stream().collect(joining(","))
-              + "), New property belongs to " + containerArchiveOrFileRef);
+  /**
+   * Overlay takes over the library nodes the metadata contributes to, so that the metadata can be added to them without modifying the shared library layer.
+   * Only the nodes along the paths of the metadata are copied, rest of the subtrees are shared with the library layer
+   */
+  private static void copyOverlappingLibraryPaths(
+      Trie<String, MetadataSuggestionNode> overlayRoots,
+      Trie<String, MetadataSuggestionNode> libraryRoots,
+      SpringConfigurationMetadata springConfigurationMetadata) {
+    if (libraryRoots.isEmpty()) {
+      return;
+    }
+    forEachPathOf(springConfigurationMetadata, pathSegments -> {
+      MetadataSuggestionNode root = overlayRoots.get(pathSegments[0]);
+      if (root == null) {
+        MetadataSuggestionNode libraryRoot = libraryRoots.get(pathSegments[0]);
+        if (libraryRoot == null) {
+          return;
         }
+        root = copyOfRoot(libraryRoot);
+        overlayRoots.put(pathSegments[0], root);
       }
-    }
+      copySharedNodesAlong(root, pathSegments);
+    });
   }
 
-  private void addGroupsToIndex(Module module, Trie<String, MetadataSuggestionNode> rootSearchIndex,
-      SpringConfigurationMetadata springConfigurationMetadata, String containerArchiveOrFileRef) {
-    List<SpringConfigurationMetadataGroup> groups = springConfigurationMetadata.getGroups();
-    if (groups != null) {
-      groups.sort(comparing(SpringConfigurationMetadataGroup::getName));
-      for (SpringConfigurationMetadataGroup group : groups) {
-        String[] pathSegments = toSanitizedPathSegments(group.getName());
-        String[] rawPathSegments = toRawPathSegments(group.getName());
-
-        MetadataSuggestionNode closestMetadata = MetadataSuggestionNode.class
-            .cast(findDeepestMetadataMatch(rootSearchIndex, pathSegments, false));
-
-        int startIndex;
-        if (closestMetadata == null) { // path does not have a corresponding root element
-          // lets build just the root element. Rest of the path segments will be taken care of by the addChildren method
-          boolean onlyRootSegmentExists = pathSegments.length == 1;
-          MetadataNonPropertySuggestionNode newGroupSuggestionNode =
-              MetadataNonPropertySuggestionNode
-                  .newInstance(rawPathSegments[0], null, containerArchiveOrFileRef);
-          if (onlyRootSegmentExists) {
-            newGroupSuggestionNode.setGroup(module, group);
-          }
-          rootSearchIndex.put(pathSegments[0], newGroupSuggestionNode);
+  /**
+   * Layer derived from a base layer starts off with the roots of the base layer & takes over the base nodes along a path only when the path is modified. A root that is missing was removed from the derived layer & so is not copied
+   */
+  private static void copySharedBasePath(Trie<String, MetadataSuggestionNode> roots,
+      Trie<String, MetadataSuggestionNode> baseRoots, String[] pathSegments) {
+    MetadataSuggestionNode root = roots.get(pathSegments[0]);
+    if (root == null) {
+      return;
+    }
+    if (root == baseRoots.get(pathSegments[0])) {
+      root = copyOfRoot(root);
+      roots.put(pathSegments[0], root);
+    }
+    copySharedNodesAlong(root, pathSegments);
+  }
 
-          closestMetadata = newGroupSuggestionNode;
-          // since we already handled the root level item, let addChildren start from index 1 of pathSegments
-          startIndex = 1;
-        } else {
-          startIndex = closestMetadata.numOfHopesToRoot() + 1;
-        }
+  private static MetadataSuggestionNode copyOfRoot(MetadataSuggestionNode sharedRoot) {
+    return sharedRoot.isProperty() ?
+        sharedRoot.deepCopy(null) :
+        ((MetadataNonPropertySuggestionNode) sharedRoot).copyWithSharedChildren(null);
+  }
 
-        if (closestMetadata.isProperty()) {
-          log.warn(
-              "Detected conflict between an existing metadata property & new group for suggestion path "
-                  + closestMetadata.getPathFromRoot(module)
-                  + ". Ignoring new group. Existing Property belongs to (" + closestMetadata
-                  .getBelongsTo().stream().collect(joining(",")) + "), New Group belongs to "
-                  + containerArchiveOrFileRef);
-        } else {
-          // lets add container as a reference till root
-          MetadataNonPropertySuggestionNode groupSuggestionNode =
-              MetadataNonPropertySuggestionNode.class.cast(closestMetadata);
-          groupSuggestionNode.addRefCascadeTillRoot(containerArchiveOrFileRef);
-
-          boolean haveMoreSegmentsLeft = startIndex < rawPathSegments.length;
-          if (haveMoreSegmentsLeft) {
-            groupSuggestionNode
-                .addChildren(module, group, rawPathSegments, startIndex, containerArchiveOrFileRef);
-          } else {
-            // Node is an intermediate node that has neither group nor property assigned to it, lets assign this group to it
-            // Can happen when `a.b.c` is already added to the metadata tree from an earlier metadata source & now we are trying to add a group for `a.b`
-            // In this e.g, startIndex would be 2. So, there is no point in adding children. We only need to update the tree appropriately
-            groupSuggestionNode.setGroup(module, group);
-          }
-        }
-      }
+  /**
+   * Copies the nodes below the root along the path that are still shared with the tree the root was copied from
+   */
+  private static void copySharedNodesAlong(MetadataSuggestionNode root, String[] pathSegments) {
+    MetadataSuggestionNode node = root;
+    for (int i = 1; i < pathSegments.length && node != null && !node.isProperty(); i++) {
+      node = ((MetadataNonPropertySuggestionNode) node).findOwnChild(pathSegments[i]);
     }
   }
 
-  private MetadataSuggestionNode findDeepestMetadataMatch(Map<String, MetadataSuggestionNode> roots,
-      String[] pathSegments, boolean matchAllSegments) {
-    MetadataSuggestionNode closestMatchedRoot = roots.get(pathSegments[0]);
-    if (closestMatchedRoot != null) {
-      closestMatchedRoot =
-          closestMatchedRoot.findDeepestMetadataNode(pathSegments, 1, matchAllSegments);
+  /**
+   * @param springConfigurationMetadata metadata
+   * @param pathConsumer                consumer of the sanitised paths of the groups, properties & hints of the metadata
+   */
+  private static void forEachPathOf(SpringConfigurationMetadata springConfigurationMetadata,
+      Consumer<String[]> pathConsumer) {
+    if (springConfigurationMetadata.getGroups() != null) {
+      springConfigurationMetadata.getGroups()
+          .forEach(group -> pathConsumer.accept(toSanitisedPathSegments(group.getName())));
+    }
+    springConfigurationMetadata.getProperties()
+        .forEach(property -> pathConsumer.accept(toSanitisedPathSegments(property.getName())));
+    if (springConfigurationMetadata.getHints() != null) {
+      springConfigurationMetadata.getHints().forEach(
+          hint -> pathConsumer.accept(toSanitisedPathSegments(hint.getExpectedPropertyName())));
     }
-    return closestMatchedRoot;
   }
 
-  private void removeReferences(Map<String, MetadataContainerInfo> containerPathToContainerInfo,
-      Trie<String, MetadataSuggestionNode> rootSearchIndex,
-      MetadataContainerInfo metadataContainerInfo) {
+  private void buildMetadataHierarchy(Module module,
+      Trie<String, MetadataSuggestionNode> rootSearchIndex, ContainerNodeIndex nodeIndex,
+      MetadataContainerInfo metadataContainerInfo,
+      SpringConfigurationMetadata springConfigurationMetadata) {
+    debug(() -> log.debug("Adding container to index " + metadataContainerInfo));
+    new MetadataTreeBuilder(module, rootSearchIndex, nodeIndex, containerIds,
+        metadataContainerInfo.getContainerArchiveOrFileRef()).build(springConfigurationMetadata);
+    debug(() -> log.debug("Done adding container to index"));
+  }
+
+  private void removeReferences(Trie<String, MetadataSuggestionNode> rootSearchIndex,
+      ContainerNodeIndex nodeIndex, MetadataContainerInfo metadataContainerInfo) {
     debug(() -> log.debug("Removing references to " + metadataContainerInfo));
-    String containerPath = metadataContainerInfo.getContainerArchiveOrFileRef();
-    containerPathToContainerInfo.remove(containerPath);
-
-    Iterator<String> searchIndexIterator = rootSearchIndex.keySet().iterator();
-    while (searchIndexIterator.hasNext()) {
-      SuggestionNode root = rootSearchIndex.get(searchIndexIterator.next());
-      if (root != null) {
-        boolean removeTree = MetadataSuggestionNode.class.cast(root)
-            .removeRefCascadeDown(metadataContainerInfo.getContainerArchiveOrFileRef());
-        if (removeTree) {
-          searchIndexIterator.remove();
-        }
-      }
-    }
+    nodeIndex.remove(rootSearchIndex,
+        containerIds.idOf(metadataContainerInfo.getContainerArchiveOrFileRef()));
   }
 
   @SuppressWarnings("unused")
   private String toTree() {
     StringBuilder builder = new StringBuilder();
-    moduleNameToRootSearchIndex.forEach((k, v) -> {
+    moduleNameToSearchIndex.forEach((k, v) -> {
       builder.append("Module: ").append(k).append("\n");
-      v.values().forEach(root -> builder
+      v.getRoots().forEach(root -> builder
           .append(root.toTree().trim().replaceAll("^", "  ").replaceAll("\n", "\n  "))
           .append("\n"));
     });
@@ -654,4 +930,25 @@ public class SuggestionServiceImpl implements SuggestionService {
       doWhenDebug.run();
     }
   }
+
+  private static class LibraryLayerHolder {
+    private final CompletableFuture<LibraryLayer> libraryLayer = new CompletableFuture<>();
+    private final AtomicBoolean buildStarted = new AtomicBoolean();
+
+    /**
+     * Modules that need the same layer concurrently wait for the first one to finish building it instead of building it again.
+     * Waiting threads are within read actions that give way to write actions, so they wait without blocking & keep checking for cancellation. A build that is cancelled (or) fails is handed over to the waiting threads as is
+     */
+    LibraryLayer getOrBuild(Supplier<LibraryLayer> builder) {
+      if (buildStarted.compareAndSet(false, true)) {
+        try {
+          libraryLayer.complete(builder.get());
+        } catch (Throwable e) {
+          libraryLayer.completeExceptionally(e);
+          throw e;
+        }
+      }
+      return ProgressIndicatorUtils.awaitWithCheckCanceled(libraryLayer);
+    }
+  }
 }
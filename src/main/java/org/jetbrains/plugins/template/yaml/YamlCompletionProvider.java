@@ -3,7 +3,7 @@ package org.jetbrains.plugins.template.yaml;
 import com.intellij.codeInsight.completion.CompletionParameters;
 import com.intellij.codeInsight.completion.CompletionProvider;
 import com.intellij.codeInsight.completion.CompletionResultSet;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.codeInsight.lookup.LookupElement;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.module.Module;
@@ -15,11 +15,12 @@ import gnu.trove.THashSet;
 import kotlin.io.ConsoleKt;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.plugins.template.suggestion.LookupElementConsumer;
+import org.jetbrains.plugins.template.suggestion.RankedSuggestions;
 import org.jetbrains.plugins.template.suggestion.SuggestionService;
 import org.jetbrains.plugins.template.suggestion.SuggestionServiceImpl;
 import org.jetbrains.yaml.psi.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -28,6 +29,7 @@ import static org.jetbrains.plugins.template.GenericUtil.truncateIdeaDummyIdenti
 import static org.jetbrains.plugins.template.PsiCustomUtil.findModule;
 import static org.jetbrains.plugins.template.model.suggestion.FileType.yaml;
 import static org.jetbrains.plugins.template.model.suggestion.SuggestionNode.sanitise;
+import static org.jetbrains.plugins.template.yaml.YamlKeyPathUtil.getAncestralKeys;
 
 class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
   @Override
@@ -83,28 +85,35 @@ class YamlCompletionProvider extends CompletionProvider<CompletionParameters> {
       }
     }
 
-    List<LookupElementBuilder> suggestions;
+    RankedSuggestions suggestions;
     // For top level element, since there is no parent parentKeyValue would be null
     String queryWithDotDelimitedPrefixes = truncateIdeaDummyIdentifier(element);
 
-    List<String> ancestralKeys = null;
-    PsiElement context = elementContext;
-    do {
-      if (context instanceof YAMLKeyValue) {
-        if (ancestralKeys == null) {
-          ancestralKeys = new ArrayList<>();
-        }
-        ancestralKeys.add(0, truncateIdeaDummyIdentifier(((YAMLKeyValue) context).getKeyText()));
-      }
-      context = requireNonNull(context).getParent();
-    } while (context != null);
+    List<String> ancestralKeys = getAncestralKeys(elementContext);
 
+    // best matches are pushed to the popup as they are found, rest are only counted. Completion invoked again asks for all of them
+    boolean allMatches = completionParameters.getInvocationCount() > 1;
     suggestions = service
-        .findSuggestionsForQueryPrefix(project, module, yaml, element, ancestralKeys,
-            queryWithDotDelimitedPrefixes, siblingsToExclude);
+        .findSuggestionsForQueryPrefix(project, module, yaml, completionParameters.getEditor(),
+            element, ancestralKeys, queryWithDotDelimitedPrefixes, siblingsToExclude,
+            allMatches ? Integer.MAX_VALUE : RankedSuggestions.DEFAULT_LIMIT,
+            new LookupElementConsumer() {
+              @Override
+              public void consume(LookupElement lookupElement) {
+                resultSet.addElement(lookupElement);
+              }
+
+              @Override
+              public boolean isStopped() {
+                return resultSet.isStopped();
+              }
+            });
 
-    if (suggestions != null) {
-      suggestions.forEach(resultSet::addElement);
+    if (suggestions != null && !resultSet.isStopped() && suggestions.hasMore()) {
+      // only the best matches for the current prefix are shown, so lets search again as the prefix changes
+      resultSet.restartCompletionOnAnyPrefixChange();
+      resultSet.addLookupAdvertisement("Showing best matches of " + suggestions.size()
+          + ". Invoke completion again to see all");
     }
   }
 
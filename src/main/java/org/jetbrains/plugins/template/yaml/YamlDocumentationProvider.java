@@ -2,7 +2,6 @@ package org.jetbrains.plugins.template.yaml;
 
 import com.intellij.lang.Language;
 import com.intellij.lang.documentation.AbstractDocumentationProvider;
-import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
@@ -17,19 +16,18 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.template.model.suggestion.DocumentationProvider;
 import org.jetbrains.plugins.template.model.suggestion.Suggestion;
 import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
-import org.jetbrains.plugins.template.suggestion.SuggestionService;
 import org.jetbrains.yaml.psi.YAMLKeyValue;
 import org.jetbrains.yaml.psi.impl.YAMLPlainTextImpl;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static com.intellij.lang.java.JavaLanguage.INSTANCE;
 
-import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
 import static org.jetbrains.plugins.template.GenericUtil.truncateIdeaDummyIdentifier;
 import static org.jetbrains.plugins.template.PsiCustomUtil.findModule;
+import static org.jetbrains.plugins.template.yaml.YamlKeyPathUtil.findEnclosingKeyValue;
+import static org.jetbrains.plugins.template.yaml.YamlKeyPathUtil.findMatchesRootTillMe;
 
 public class YamlDocumentationProvider extends AbstractDocumentationProvider {
   @Override
@@ -77,24 +75,12 @@ public class YamlDocumentationProvider extends AbstractDocumentationProvider {
       List<SuggestionNode> matchedNodesFromRootTillLeaf;
       boolean requestedForTargetValue = false;
 
-      SuggestionService suggestionService =
-          ServiceManager.getService(element.getProject(), SuggestionService.class);
-
       Project project = element.getProject();
       Module module = findModule(element);
 
-      List<String> ancestralKeys = null;
       PsiElement elementContext = element.getContext();
-      PsiElement context = elementContext;
-      do {
-        if (context instanceof YAMLKeyValue) {
-          if (ancestralKeys == null) {
-            ancestralKeys = new ArrayList<>();
-          }
-          ancestralKeys.add(0, truncateIdeaDummyIdentifier(((YAMLKeyValue) context).getKeyText()));
-        }
-        context = requireNonNull(context).getParent();
-      } while (context != null);
+      // resolved nodes are cached on the key value, so that moving the mouse within the same block does not resolve them again
+      YAMLKeyValue keyValue = findEnclosingKeyValue(elementContext);
 
       String value = null;
       if (elementContext instanceof YAMLKeyValue) {
@@ -105,9 +91,8 @@ public class YamlDocumentationProvider extends AbstractDocumentationProvider {
         requestedForTargetValue = true;
       }
 
-      if (ancestralKeys != null) {
-        matchedNodesFromRootTillLeaf =
-            suggestionService.findMatchedNodesRootTillEnd(project, module, ancestralKeys);
+      if (keyValue != null && module != null) {
+        matchedNodesFromRootTillLeaf = findMatchesRootTillMe(project, module, keyValue);
         if (matchedNodesFromRootTillLeaf != null) {
           SuggestionNode target =
               matchedNodesFromRootTillLeaf.get(matchedNodesFromRootTillLeaf.size() - 1);
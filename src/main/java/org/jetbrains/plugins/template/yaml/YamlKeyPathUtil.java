@@ -0,0 +1,87 @@
+package org.jetbrains.plugins.template.yaml;
+
+import com.intellij.codeInsight.completion.CompletionUtil;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.PsiTreeUtil;
+import lombok.experimental.UtilityClass;
+import org.jetbrains.plugins.template.PathList;
+import org.jetbrains.plugins.template.model.suggestion.SuggestionNode;
+import org.jetbrains.plugins.template.suggestion.SuggestionService;
+import org.jetbrains.yaml.psi.YAMLKeyValue;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+import static com.intellij.openapi.util.Key.create;
+import static com.intellij.psi.util.CachedValueProvider.Result.create;
+import static com.intellij.psi.util.CachedValuesManager.getCachedValue;
+import static com.intellij.psi.util.PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT;
+import static org.jetbrains.plugins.template.GenericUtil.truncateIdeaDummyIdentifier;
+
+/**
+ * Keys enclosing a yaml element & the nodes they resolve to are cached on the {@link YAMLKeyValue}s, so that repeated completion/documentation requests within a nested block neither walk the whole PSI tree nor resolve the nodes from the root every time
+ */
+@UtilityClass
+class YamlKeyPathUtil {
+  private static final Key<CachedValue<List<String>>>
+      SPRING_ASSISTANT_PLUGIN_KEYS_ROOT_TILL_ME_KEY =
+      create("spring_assistant_plugin_keysRootTillMe");
+  private static final Key<CachedValue<List<SuggestionNode>>>
+      SPRING_ASSISTANT_PLUGIN_MATCHES_ROOT_TILL_ME_KEY =
+      create("spring_assistant_plugin_matchesRootTillMe");
+
+  /**
+   * @param element element to start from (inclusive)
+   * @return nearest key value enclosing the element. If the element belongs to the copy of the file completion works against, the matching key value from the original file is returned whenever possible, as the copy is thrown away after every invocation
+   */
+  @Nullable
+  static YAMLKeyValue findEnclosingKeyValue(@Nullable PsiElement element) {
+    YAMLKeyValue keyValue = PsiTreeUtil.getParentOfType(element, YAMLKeyValue.class, false);
+    return keyValue != null ? CompletionUtil.getOriginalOrSelf(keyValue) : null;
+  }
+
+  /**
+   * @param element element to start from (inclusive)
+   * @return keys of all the key values enclosing the element, root first. Null if the element is not within any key value
+   */
+  @Nullable
+  static List<String> getAncestralKeys(@Nullable PsiElement element) {
+    YAMLKeyValue keyValue = findEnclosingKeyValue(element);
+    return keyValue != null ? getKeysRootTillMe(keyValue) : null;
+  }
+
+  /**
+   * @return keys from root till the key value (inclusive). Each key value extends the (cached) keys of its parent, instead of walking till the root
+   */
+  static List<String> getKeysRootTillMe(YAMLKeyValue keyValue) {
+    return getCachedValue(keyValue, SPRING_ASSISTANT_PLUGIN_KEYS_ROOT_TILL_ME_KEY, () -> {
+      String key = truncateIdeaDummyIdentifier(keyValue.getKeyText());
+      YAMLKeyValue parentKeyValue = PsiTreeUtil.getParentOfType(keyValue, YAMLKeyValue.class);
+      List<String> keysRootTillMe = parentKeyValue == null ?
+          PathList.of(key) :
+          PathList.append(getKeysRootTillMe(parentKeyValue), key);
+      return create(keysRootTillMe, keyValue.getContainingFile());
+    });
+  }
+
+  /**
+   * Nodes are resolved again only if the file is modified, the index is replaced (or) java classes change, as part of the nodes might be derived from classes
+   *
+   * @return nodes matching the keys from root till the key value (inclusive), root first. Null if the keys do not match
+   */
+  @Nullable
+  static List<SuggestionNode> findMatchesRootTillMe(Project project, Module module,
+      YAMLKeyValue keyValue) {
+    SuggestionService service = SuggestionService.getInstance(project);
+    return getCachedValue(keyValue, SPRING_ASSISTANT_PLUGIN_MATCHES_ROOT_TILL_ME_KEY,
+        () -> create(
+            service.findMatchedNodesRootTillEnd(project, module, getKeysRootTillMe(keyValue)),
+            keyValue.getContainingFile(), service.getIndexModificationTracker(),
+            JAVA_STRUCTURE_MODIFICATION_COUNT));
+  }
+
+}
@@ -0,0 +1,136 @@
+package org.jetbrains.plugins.template.suggestion;
+
+import com.intellij.codeInsight.lookup.LookupElement;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import org.apache.commons.collections4.Trie;
+import org.apache.commons.collections4.trie.PatriciaTrie;
+import org.jetbrains.plugins.template.model.metadata.MetadataSuggestionNode;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadata;
+import org.jetbrains.plugins.template.model.metadata.json.SpringConfigurationMetadataProperty;
+import org.jetbrains.plugins.template.model.suggestion.FileType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.sort;
+import static org.jetbrains.plugins.template.model.suggestion.PathSegments.toSanitisedPathSegments;
+
+/**
+ * Search resumed from a session left behind by an earlier keystroke must find exactly what a fresh search finds
+ */
+public class CompletionSessionTest extends BasePlatformTestCase {
+
+  private SuggestionServiceImpl service;
+  private ModuleSearchIndex searchIndex;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    service = new SuggestionServiceImpl();
+    Trie<String, MetadataSuggestionNode> roots = new PatriciaTrie<>();
+    SpringConfigurationMetadata metadata = new SpringConfigurationMetadata();
+    // `a.bx` shadows `a.y.bz` for `a.b`, but not for `a.bz`
+    metadata.setProperties(
+        asList(newProperty("a.bx"), newProperty("a.y.bz"), newProperty("server.port"),
+            newProperty("spring.datasource.url"), newProperty("spring.datasource.username"),
+            newProperty("spring.jpa.show-sql"), newProperty("web.spx-enabled")));
+    new MetadataTreeBuilder(getModule(), roots, new ContainerNodeIndex(),
+        new ContainerIdRegistry(), "test").build(metadata);
+    searchIndex = new ModuleSearchIndex(LibraryLayer.EMPTY, roots, new HashMap<>());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      service.dispose();
+    } finally {
+      super.tearDown();
+    }
+  }
+
+  public void testResumingFromRootsMatchesFreshSearch() {
+    assertResumedSearchMatchesFreshSearch("s.u", "s.ur");
+    assertResumedSearchMatchesFreshSearch("s", "sp");
+    assertResumedSearchMatchesFreshSearch("sp.d", "sp.da");
+  }
+
+  public void testResumingRevealsMatchesShadowedForEarlierQuery() {
+    assertEquals(singletonList("a.bx"), search("a.b", null).getMatches());
+    assertEquals(singletonList("a.y.bz"),
+        assertResumedSearchMatchesFreshSearch("a.b", "a.bz"));
+  }
+
+  public void testResumingBelowRootsMatchesFreshSearch() {
+    assertResumedSearchMatchesFreshSearch("datasource.u", "datasource.ur");
+    assertResumedSearchMatchesFreshSearch("d", "da");
+    assertResumedSearchMatchesFreshSearch("y", "yb");
+  }
+
+  public void testExtendingPastMatchedRootsFallsBackToSearchBelowRoots() {
+    assertEquals(singletonList("web.spx-enabled"),
+        assertResumedSearchMatchesFreshSearch("sp", "spx"));
+  }
+
+  /**
+   * @return lookup strings found by the search for the extended query, sorted
+   */
+  private List<String> assertResumedSearchMatchesFreshSearch(String query, String extendedQuery) {
+    Result earlier = search(query, null);
+    assertNotNull(earlier.session);
+    assertTrue(earlier.session.canResumeFor(toSanitisedPathSegments(extendedQuery)));
+
+    List<String> fresh = search(extendedQuery, null).getMatches();
+    List<String> resumed = search(extendedQuery, earlier.session).getMatches();
+    assertEquals("Results of " + extendedQuery + " resumed from " + query, fresh, resumed);
+    return resumed;
+  }
+
+  private Result search(String query, @Nullable CompletionSession session) {
+    String[] querySegmentPrefixes = toSanitisedPathSegments(query);
+    List<String> matches = new ArrayList<>();
+    RankedSuggestions suggestions =
+        new RankedSuggestions(querySegmentPrefixes, Integer.MAX_VALUE,
+            new LookupElementConsumer() {
+              @Override
+              public void consume(LookupElement lookupElement) {
+                matches.add(lookupElement.getLookupString());
+              }
+
+              @Override
+              public boolean isStopped() {
+                return false;
+              }
+            });
+    CompletionSession nextSession = service
+        .findSuggestionsNotUnderAnyKey(getModule(), searchIndex, FileType.yaml,
+            querySegmentPrefixes, null, session, suggestions);
+    suggestions.finish();
+    sort(matches);
+    return new Result(nextSession, matches);
+  }
+
+  private static SpringConfigurationMetadataProperty newProperty(String name) {
+    SpringConfigurationMetadataProperty property = new SpringConfigurationMetadataProperty();
+    property.setName(name);
+    return property;
+  }
+
+  private static class Result {
+    private final CompletionSession session;
+    private final List<String> matches;
+
+    Result(CompletionSession session, List<String> matches) {
+      this.session = session;
+      this.matches = matches;
+    }
+
+    List<String> getMatches() {
+      return matches;
+    }
+  }
+
+}